@@ -1,19 +1,16 @@
 package com.github.intrigus.ftd;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.Objects;
 
-import org.zeroturnaround.exec.InvalidExitValueException;
-import org.zeroturnaround.exec.ProcessExecutor;
-import org.zeroturnaround.exec.ProcessResult;
-
+import com.github.intrigus.ftd.compile.CompileResult;
+import com.github.intrigus.ftd.compile.CompileService;
+import com.github.intrigus.ftd.compile.StagedSketch;
+import com.github.intrigus.ftd.exception.ArtifactNotFoundException;
 import com.github.intrigus.ftd.exception.BinaryNotFoundException;
 import com.github.intrigus.ftd.exception.CompilationFailedException;
 import com.github.intrigus.ftd.util.OsUtil;
@@ -35,21 +32,58 @@ public class ArduinoCLI {
 	}
 
 	/**
-	 * Converts a String to an InputStream. The String is assumed to be encoded
-	 * using UTF8.
+	 * Writes a String to a new {@link StagedSketch}. The caller has to close it.
+	 * 
+	 * @param string the generated C++ arduino file
+	 * @return the staged sketch
+	 */
+	private static StagedSketch stage(String string) throws CompilationFailedException {
+		StagedSketch sketch = stageArduinoC();
+		try {
+			sketch.getWriter().write(string);
+		} catch (IOException e) {
+			sketch.close();
+			throw new CompilationFailedException("Failed to create the necessary files for compilation.", e);
+		}
+		return sketch;
+	}
+
+	/**
+	 * Creates a temporary file the generated C++ arduino file can be written to
+	 * while it is generated, e.g. with
+	 * {@code Sb3ToArduinoC.convertToArduinoC(is, sketch.getWriter())}. This avoids
+	 * keeping the whole file in memory. The returned sketch has to be closed after
+	 * it has been compiled or uploaded.
 	 * 
-	 * @param string the String to convert to an InputStream
-	 * @return the String converted to an InputStream
+	 * @return the empty staged sketch
+	 * @throws CompilationFailedException when the file could not be created
 	 */
-	private static InputStream toInputStream(String string) {
-		return new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8));
+	public static StagedSketch stageArduinoC() throws CompilationFailedException {
+		return CompileService.get().stageSketch();
 	}
 
 	/**
 	 * @see ArduinoCLI#uploadArduinoC(InputStream, String)
 	 */
 	public static String uploadArduinoC(String input, String portSpecifier) throws CompilationFailedException {
-		return uploadArduinoC(toInputStream(input), portSpecifier);
+		try (StagedSketch sketch = stage(input)) {
+			return uploadArduinoC(sketch, portSpecifier);
+		}
+	}
+
+	/**
+	 * Compiles and uploads a sketch that has been staged with
+	 * {@link ArduinoCLI#stageArduinoC()}, see
+	 * {@link ArduinoCLI#uploadArduinoC(InputStream, String)}.
+	 * 
+	 * @param sketch        the staged C++ arduino file.
+	 * @param portSpecifier the port that will be used for uploading i.e. the port
+	 *                      the Ftduino is connected to.
+	 * @return The log of the execution.
+	 * @throws CompilationFailedException when the compilation or upload failed.
+	 */
+	public static String uploadArduinoC(StagedSketch sketch, String portSpecifier) throws CompilationFailedException {
+		return CompileService.get().upload(sketch, portSpecifier);
 	}
 
 	/**
@@ -65,42 +99,16 @@ public class ArduinoCLI {
 	 * @throws CompilationFailedException when the compilation or upload failed.
 	 */
 	public static String uploadArduinoC(InputStream is, String portSpecifier) throws CompilationFailedException {
-		try {
-			Objects.requireNonNull(is);
-			Objects.requireNonNull(portSpecifier);
-			Path tempDir = Files.createTempDirectory("scratch");
-			Path sketchFile = tempDir.resolve(tempDir.getFileName() + ".ino");
-			Files.createFile(sketchFile);
-			sketchFile.toFile().deleteOnExit();
-			tempDir.toFile().deleteOnExit();
-			Files.copy(is, sketchFile, StandardCopyOption.REPLACE_EXISTING);
-			ProcessResult arduinoResult = new ProcessExecutor()
-					.command(getArduinoCliBinary().toAbsolutePath().toString(), "compile", "--config-file",
-							getArduinoCliBinary().resolveSibling("arduino-cli.yaml").toAbsolutePath().toString(),
-							"--upload", "--fqbn", "ftduino:avr:ftduino", "--port", portSpecifier, "--verify",
-							tempDir.toAbsolutePath().toString())
-					.directory(getArduinoCliBinary().getParent().toAbsolutePath().toFile()).destroyOnExit()
-					.exitValueNormal().readOutput(true).executeNoTimeout();
-			return arduinoResult.outputUTF8();
-		} catch (BinaryNotFoundException e) {
-			throw new CompilationFailedException("Failed to locate the binary used for compilation and upload.", e);
-		} catch (IOException e) {
-			throw new CompilationFailedException("Failed to create the necessary files for compilation and upload.", e);
-		} catch (InvalidExitValueException e) {
-			throw new CompilationFailedException(
-					"Compilation and upload did not exit with exit value 0. Exit value: " + e.getExitValue(), e,
-					e.getResult().outputUTF8());
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-			throw new CompilationFailedException("Compilation and upload got interrupted.", e);
-		}
+		return CompileService.get().upload(is, portSpecifier);
 	}
 
 	/**
 	 * @see ArduinoCLI#compileArduinoC(InputStream)
 	 */
 	public static String compileArduinoC(String string) throws CompilationFailedException {
-		return compileArduinoC(toInputStream(string));
+		try (StagedSketch sketch = stage(string)) {
+			return CompileService.get().compile(sketch);
+		}
 	}
 
 	/**
@@ -113,36 +121,65 @@ public class ArduinoCLI {
 	 * @throws CompilationFailedException when the compilation failed.
 	 */
 	public static String compileArduinoC(InputStream is) throws CompilationFailedException {
-		try {
-			Objects.requireNonNull(is);
-			long currentTime = System.currentTimeMillis();
-			Path tempDir = Files.createTempDirectory("scratch" + currentTime);
-			Path sketchFile = tempDir.resolve("sketch.ino");
-			Files.createFile(sketchFile);
-			sketchFile.toFile().deleteOnExit();
-			tempDir.toFile().deleteOnExit();
-			Files.copy(is, sketchFile, StandardCopyOption.REPLACE_EXISTING);
-			ProcessResult arduinoResult = new ProcessExecutor()
-					.command(getArduinoCliBinary().toAbsolutePath().toString(), "compile", "--config-file",
-							getArduinoCliBinary().resolveSibling("arduino-cli.yaml").toAbsolutePath().toString(),
-							"--fqbn", "ftduino:avr:ftduino", sketchFile.toAbsolutePath().toString())
-					.directory(getArduinoCliBinary().getParent().toAbsolutePath().toFile()).destroyOnExit()
-					.exitValueNormal().readOutput(true).executeNoTimeout();
-			return arduinoResult.outputUTF8();
-		} catch (BinaryNotFoundException e) {
-			throw new CompilationFailedException("Failed to locate the binary used for compilation.", e);
-		} catch (IOException e) {
-			throw new CompilationFailedException("Failed to create the necessary files for compilation.", e);
-		} catch (InvalidExitValueException e) {
-			throw new CompilationFailedException(
-					"Compilation did not exit with exit value 0. Exit value: " + e.getExitValue(), e,
-					e.getResult().outputUTF8());
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-			throw new CompilationFailedException("Compilation got interrupted.", e);
+		return CompileService.get().compile(is);
+	}
+
+	/**
+	 * @see ArduinoCLI#compileArduinoCToArtifact(InputStream)
+	 */
+	public static CompileResult compileArduinoCToArtifact(String string) throws CompilationFailedException {
+		try (StagedSketch sketch = stage(string)) {
+			return compileArduinoCToArtifact(sketch);
 		}
 	}
 
+	/**
+	 * Compiles a sketch that has been staged with
+	 * {@link ArduinoCLI#stageArduinoC()}, see
+	 * {@link ArduinoCLI#compileArduinoCToArtifact(InputStream)}.
+	 * 
+	 * @param sketch the staged C++ arduino file.
+	 * @return The id of the compiled program and the (compilation) log of the
+	 *         execution.
+	 * @throws CompilationFailedException when the compilation failed.
+	 */
+	public static CompileResult compileArduinoCToArtifact(StagedSketch sketch) throws CompilationFailedException {
+		return CompileService.get().compileToArtifact(sketch);
+	}
+
+	/**
+	 * Expects an input stream that represents the generated C++ arduino file. The
+	 * file is compiled with the Ftduino library and the necessary files for the
+	 * scratch runtime. The compiled program is kept, so that it can be uploaded
+	 * with {@link ArduinoCLI#uploadArtifact(String, String)} without compiling it
+	 * again.
+	 * 
+	 * @param is the input stream that represents the generated C++ arduino file.
+	 * @return The id of the compiled program and the (compilation) log of the
+	 *         execution.
+	 * @throws CompilationFailedException when the compilation failed.
+	 */
+	public static CompileResult compileArduinoCToArtifact(InputStream is) throws CompilationFailedException {
+		return CompileService.get().compileToArtifact(is);
+	}
+
+	/**
+	 * Uploads a program that has been compiled with
+	 * {@link ArduinoCLI#compileArduinoCToArtifact(InputStream)} to the Ftduino.
+	 * Only the flashing step is executed.
+	 * 
+	 * @param artifactId    the id of the compiled program.
+	 * @param portSpecifier the port that will be used for uploading i.e. the port
+	 *                      the Ftduino is connected to.
+	 * @return The log of the upload.
+	 * @throws ArtifactNotFoundException  when the compiled program is not
+	 *                                    available (anymore).
+	 * @throws CompilationFailedException when the upload failed.
+	 */
+	public static String uploadArtifact(String artifactId, String portSpecifier) throws CompilationFailedException {
+		return CompileService.get().uploadArtifact(artifactId, portSpecifier);
+	}
+
 	/**
 	 * Returns the platform specific path of the {@code arduino-cli} binary. For
 	 * example it returns "[current_working_dir]/arduino_cli/LINUX_64/arduino-cli"
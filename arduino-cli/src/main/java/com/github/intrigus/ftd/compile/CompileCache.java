@@ -0,0 +1,346 @@
+package com.github.intrigus.ftd.compile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.github.intrigus.ftd.ArduinoCLI;
+import com.github.intrigus.ftd.exception.BinaryNotFoundException;
+import com.github.intrigus.ftd.util.HashUtil;
+import com.github.intrigus.ftd.util.LruMap;
+import com.github.intrigus.ftd.util.PathUtil;
+import com.github.intrigus.ftd.util.ToolchainVersions;
+
+/**
+ * An on-disk cache of compilation results. An entry is addressed by the SHA-256
+ * hash of the generated C++ source together with the toolchain versions and the
+ * Scratch_Ftduino_All library, and consists of the compilation log and the
+ * built hex file.
+ * <p>
+ * The entries are evicted in least recently used order once their combined
+ * size exceeds the configured maximum. Entries that already exist in the cache
+ * folder, e.g. from a previous run, are picked up when the cache is created.
+ * </p>
+ */
+class CompileCache {
+	private static final String LOG_FILE_NAME = "compile.log";
+	private static final String HEX_FILE_NAME = "sketch.ino.hex";
+	private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+	private final Path cacheDir;
+	private final long maxSize;
+	// evicted by evict(), which knows the size of the entries
+	private final LruMap<String, Long> entrySizes = new LruMap<>();
+	// the number of users of every pinned entry, see pin(String)
+	private final Map<String, Integer> pinCounts = new HashMap<>();
+	private long currentSize;
+
+	/**
+	 * A cached compilation result.
+	 */
+	static class Entry {
+		private final String key;
+		private final Path entryDir;
+
+		private Entry(String key, Path entryDir) {
+			this.key = key;
+			this.entryDir = entryDir;
+		}
+
+		/**
+		 * The key of this entry, see {@link CompileCache#computeKey(byte[])}.
+		 */
+		String getKey() {
+			return key;
+		}
+
+		/**
+		 * The built hex file that can be flashed to the Ftduino.
+		 */
+		Path getHexFile() {
+			return entryDir.resolve(HEX_FILE_NAME);
+		}
+
+		/**
+		 * Reads the log of the compilation that produced this entry.
+		 *
+		 * @return the compilation log
+		 * @throws IOException if the log could not be read
+		 */
+		String readLog() throws IOException {
+			return new String(Files.readAllBytes(entryDir.resolve(LOG_FILE_NAME)), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Creates a cache that stores its entries in the given folder.
+	 *
+	 * @param cacheDir the folder the entries are stored in. It is created if it
+	 *                 does not exist.
+	 * @param maxSize  the maximum combined size of all entries in bytes
+	 * @throws IOException if the folder could not be created or read
+	 */
+	CompileCache(Path cacheDir, long maxSize) throws IOException {
+		this.cacheDir = Files.createDirectories(Objects.requireNonNull(cacheDir));
+		this.maxSize = maxSize;
+		loadExistingEntries();
+	}
+
+	/**
+	 * The hash of the Scratch_Ftduino_All library that is linked into every
+	 * sketch. The library is copied into the toolchain by the build, but it
+	 * changes without a new toolchain version, so its files are hashed once when
+	 * the first key is computed.
+	 * <p>
+	 * If the library can not be found, its version is unknown and entries of
+	 * other runs must not be reused. A random value is used instead, so the keys
+	 * are only valid in this process.
+	 * </p>
+	 */
+	private static class RuntimeLibraryHashHolder {
+		private static final byte[] HASH = hashRuntimeLibrary();
+
+		private static byte[] hashRuntimeLibrary() {
+			byte[] hash = null;
+			try {
+				Path libraryDir = ArduinoCLI.getArduinoCliBinary().resolveSibling("packages").resolve("ftduino")
+						.resolve("hardware").resolve("avr").resolve(ToolchainVersions.FTDUINO_VERSION)
+						.resolve("libraries").resolve("Scratch_Ftduino_All");
+				hash = hashDirectory(libraryDir);
+			} catch (BinaryNotFoundException e) {
+				// the library is part of the toolchain
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to read the Scratch_Ftduino_All library", e);
+			}
+			if (hash == null) {
+				hash = new byte[32];
+				new SecureRandom().nextBytes(hash);
+			}
+			return hash;
+		}
+	}
+
+	/**
+	 * Hashes the names and the content of all files in a directory.
+	 *
+	 * @param dir the directory
+	 * @return the SHA-256 hash or {@code null} if the directory does not exist
+	 * @throws IOException if a file could not be read
+	 */
+	static byte[] hashDirectory(Path dir) throws IOException {
+		if (!Files.isDirectory(dir)) {
+			return null;
+		}
+		List<Path> files;
+		try (Stream<Path> stream = Files.walk(dir)) {
+			files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+		}
+		MessageDigest digest = HashUtil.newSha256Digest();
+		for (Path file : files) {
+			byte[] content = Files.readAllBytes(file);
+			String header = dir.relativize(file).toString().replace('\\', '/') + "\n" + content.length + "\n";
+			digest.update(header.getBytes(StandardCharsets.UTF_8));
+			digest.update(content);
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Computes the key under which the compilation result of the given source is
+	 * stored. The key changes whenever the source, the toolchain or the
+	 * Scratch_Ftduino_All library changes.
+	 *
+	 * @param source the generated C++ arduino file
+	 * @return the hex encoded SHA-256 hash of the toolchain versions, the library
+	 *         and the source
+	 */
+	static String computeKey(byte[] source) {
+		MessageDigest digest = newKeyDigest();
+		digest.update(source);
+		return toKey(digest);
+	}
+
+	/**
+	 * Creates a digest that computes the key of a source while it is written, see
+	 * {@link #computeKey(byte[])}. The source has to be passed to the digest, the
+	 * key is then returned by {@link #toKey(MessageDigest)}.
+	 *
+	 * @return the digest that already contains the toolchain versions and the
+	 *         library
+	 */
+	static MessageDigest newKeyDigest() {
+		MessageDigest digest = HashUtil.newSha256Digest();
+		String toolchain = ToolchainVersions.ARDUINO_CLI_VERSION + "\n" + ToolchainVersions.ARDUINO_VERSION + "\n"
+				+ ToolchainVersions.FTDUINO_VERSION + "\n";
+		digest.update(toolchain.getBytes(StandardCharsets.UTF_8));
+		digest.update(RuntimeLibraryHashHolder.HASH);
+		return digest;
+	}
+
+	/**
+	 * Completes the digest and returns the key.
+	 *
+	 * @param digest a digest created by {@link #newKeyDigest()}
+	 * @return the hex encoded hash
+	 */
+	static String toKey(MessageDigest digest) {
+		return HashUtil.toHex(digest.digest());
+	}
+
+	/**
+	 * The folder the entries are stored in.
+	 */
+	Path getCacheDir() {
+		return cacheDir;
+	}
+
+	/**
+	 * Looks up the entry with the given key and marks it as recently used.
+	 *
+	 * @param key the key of the entry
+	 * @return the entry or {@code null} if there is no entry with this key
+	 */
+	synchronized Entry get(String key) {
+		if (entrySizes.get(key) == null) {
+			return null;
+		}
+		Path entryDir = cacheDir.resolve(key);
+		if (!Files.isRegularFile(entryDir.resolve(HEX_FILE_NAME))) {
+			// someone removed the files behind our back
+			currentSize -= entrySizes.remove(key);
+			return null;
+		}
+		try {
+			Files.setLastModifiedTime(entryDir, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// only used to restore the order of the entries on the next start
+		}
+		return new Entry(key, entryDir);
+	}
+
+	/**
+	 * Looks up the entry with the given key like {@link #get(String)} and keeps
+	 * it from being evicted until it is unpinned again, e.g. while its hex file is
+	 * uploaded. Pinned entries may make the cache exceed its maximum size for a
+	 * while.
+	 *
+	 * @param key the key of the entry
+	 * @return the pinned entry or {@code null} if there is no entry with this key
+	 */
+	synchronized Entry pin(String key) {
+		Entry entry = get(key);
+		if (entry != null) {
+			pinCounts.merge(key, 1, Integer::sum);
+		}
+		return entry;
+	}
+
+	/**
+	 * Allows the entry to be evicted again once every user that pinned it has
+	 * unpinned it.
+	 *
+	 * @param entry an entry returned by {@link #pin(String)}
+	 */
+	synchronized void unpin(Entry entry) {
+		pinCounts.computeIfPresent(entry.key, (key, count) -> count > 1 ? count - 1 : null);
+	}
+
+	/**
+	 * Stores a compilation result and evicts the least recently used entries if
+	 * the cache got too big.
+	 *
+	 * @param key     the key of the entry
+	 * @param log     the compilation log
+	 * @param hexFile the built hex file, it is copied into the cache
+	 * @return the stored entry
+	 * @throws IOException if the entry could not be written
+	 */
+	synchronized Entry put(String key, String log, Path hexFile) throws IOException {
+		Entry existing = get(key);
+		if (existing != null) {
+			return existing;
+		}
+		Path entryDir = cacheDir.resolve(key);
+		Path tempDir = Files.createTempDirectory(cacheDir, "incomplete");
+		try {
+			Files.write(tempDir.resolve(LOG_FILE_NAME), log.getBytes(StandardCharsets.UTF_8));
+			Files.copy(hexFile, tempDir.resolve(HEX_FILE_NAME));
+			PathUtil.deleteRecursively(entryDir);
+			Files.move(tempDir, entryDir, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			PathUtil.deleteRecursively(tempDir);
+		}
+		long size = sizeOf(entryDir);
+		entrySizes.put(key, size);
+		currentSize += size;
+		evict();
+		return new Entry(key, entryDir);
+	}
+
+	private void evict() throws IOException {
+		Iterator<Map.Entry<String, Long>> it = entrySizes.entrySet().iterator();
+		// never evict the entry that has just been added, it is the last one
+		int remaining = entrySizes.size();
+		while (currentSize > maxSize && remaining-- > 1) {
+			Map.Entry<String, Long> eldest = it.next();
+			if (pinCounts.containsKey(eldest.getKey())) {
+				continue;
+			}
+			PathUtil.deleteRecursively(cacheDir.resolve(eldest.getKey()));
+			currentSize -= eldest.getValue();
+			it.remove();
+		}
+	}
+
+	private void loadExistingEntries() throws IOException {
+		List<Path> entryDirs = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				if (KEY_PATTERN.matcher(name).matches() && Files.isRegularFile(path.resolve(HEX_FILE_NAME))
+						&& Files.isRegularFile(path.resolve(LOG_FILE_NAME))) {
+					entryDirs.add(path);
+				} else if (name.startsWith("incomplete")) {
+					// left over from a process that has been killed while writing an entry
+					PathUtil.deleteRecursively(path);
+				}
+			}
+		}
+		entryDirs.sort(Comparator.comparing(CompileCache::lastModifiedTime));
+		for (Path entryDir : entryDirs) {
+			long size = sizeOf(entryDir);
+			entrySizes.put(entryDir.getFileName().toString(), size);
+			currentSize += size;
+		}
+		evict();
+	}
+
+	private static FileTime lastModifiedTime(Path path) {
+		try {
+			return Files.getLastModifiedTime(path);
+		} catch (IOException e) {
+			return FileTime.fromMillis(0);
+		}
+	}
+
+	private static long sizeOf(Path entryDir) throws IOException {
+		return Files.size(entryDir.resolve(LOG_FILE_NAME)) + Files.size(entryDir.resolve(HEX_FILE_NAME));
+	}
+}
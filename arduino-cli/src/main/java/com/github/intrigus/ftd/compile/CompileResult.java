@@ -0,0 +1,34 @@
+package com.github.intrigus.ftd.compile;
+
+/**
+ * The result of a successful compilation. The artifact id can later be used to
+ * upload the compiled program without compiling it again, see
+ * {@link CompileService#uploadArtifact(String, String)}.
+ */
+public class CompileResult {
+	private final String artifactId;
+	private final String log;
+
+	CompileResult(String artifactId, String log) {
+		this.artifactId = artifactId;
+		this.log = log;
+	}
+
+	/**
+	 * Returns the id of the compiled program.
+	 * 
+	 * @return the id of the compiled program
+	 */
+	public String getArtifactId() {
+		return artifactId;
+	}
+
+	/**
+	 * Returns the log of the compilation.
+	 * 
+	 * @return the log of the compilation
+	 */
+	public String getLog() {
+		return log;
+	}
+}
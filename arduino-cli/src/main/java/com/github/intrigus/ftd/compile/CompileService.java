@@ -0,0 +1,599 @@
+package com.github.intrigus.ftd.compile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.zeroturnaround.exec.InvalidExitValueException;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+
+import com.github.intrigus.ftd.ArduinoCLI;
+import com.github.intrigus.ftd.exception.ArtifactNotFoundException;
+import com.github.intrigus.ftd.exception.BinaryNotFoundException;
+import com.github.intrigus.ftd.exception.CompilationFailedException;
+
+/**
+ * Compiles and uploads generated sketches with arduino-cli. Every compilation
+ * used to happen in a fresh temporary folder which forced arduino-cli to
+ * rebuild the Ftduino core and the Scratch_Ftduino_All library each time. This
+ * service instead keeps a pool of {@link SketchWorkspace}s that live as long as
+ * the process and shares a single core cache between them, so that only the
+ * generated sketch has to be compiled once a workspace is warm.
+ * <p>
+ * The number of workspaces and therefore the number of concurrently running
+ * arduino-cli processes defaults to the number of available processors. It can
+ * be changed with the {@code ftd.compile.workspaces} system property.
+ * </p>
+ * <p>
+ * The results of the compilations are kept in a {@link CompileCache}, so that
+ * compiling and then uploading an unchanged program only compiles it once. The
+ * cache is stored in the folder given by the {@code ftd.compile.cache.dir}
+ * system property (default: {@code ftd-compile-cache} in the temporary folder)
+ * and is limited to {@code ftd.compile.cache.size} bytes (default: 64 MiB).
+ * </p>
+ * <p>
+ * A compilation is stopped after {@code ftd.compile.timeout} seconds (default:
+ * 300) and an upload after {@code ftd.upload.timeout} seconds (default: 120).
+ * Both are also stopped if the calling thread gets interrupted.
+ * </p>
+ * <p>
+ * Identical sources that are compiled at the same time, e.g. because a student
+ * clicked twice, are only compiled once and every caller receives the result.
+ * </p>
+ * <p>
+ * The sources are never kept in memory as a whole. They are written to a
+ * {@link StagedSketch} which is then copied into the sketch folder.
+ * </p>
+ */
+public class CompileService {
+
+	private static final String FQBN = "ftduino:avr:ftduino";
+	private static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+
+	private final Semaphore workspacePermits;
+	private final long compileTimeoutSeconds = Long.getLong("ftd.compile.timeout", 300);
+	private final long uploadTimeoutSeconds = Long.getLong("ftd.upload.timeout", 120);
+	// used as a stack, so that the most recently used, i.e. warmest, workspace
+	// is reused first
+	private final Deque<SketchWorkspace> idleWorkspaces = new ConcurrentLinkedDeque<>();
+	private final AtomicInteger nextWorkspaceId = new AtomicInteger();
+	private final AtomicInteger nextSourceId = new AtomicInteger();
+
+	// the compilations that are running right now, guarded by itself
+	private final Map<String, Flight> flights = new HashMap<>();
+	private final ExecutorService compileExecutor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "compile-service");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private Path rootDir;
+	private CompileCache cache;
+
+	/**
+	 * A running compilation together with the number of callers that wait for it.
+	 * The compilation is cancelled once all of them stopped waiting, e.g. because
+	 * they got interrupted.
+	 */
+	private static class Flight {
+		private final CompletableFuture<CachedResult> result = new CompletableFuture<>();
+		private final Path source;
+		private Future<?> compilation;
+		private int waiters;
+
+		private Flight(Path source) {
+			this.source = source;
+		}
+	}
+
+	private CompileService(int maxWorkspaces) {
+		this.workspacePermits = new Semaphore(maxWorkspaces, true);
+	}
+
+	/**
+	 * Returns the compile service that is shared by the whole process.
+	 *
+	 * @return the shared compile service
+	 */
+	public static CompileService get() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Use the holder idiom to do safe publication, see <a href=
+	 * "https://shipilev.net/blog/2014/safe-public-construction/#_safe_publication">here</a>
+	 * for more information.
+	 *
+	 */
+	private static class Holder {
+		public static final CompileService INSTANCE = new CompileService(Math.max(1,
+				Integer.getInteger("ftd.compile.workspaces", Runtime.getRuntime().availableProcessors())));
+	}
+
+	/**
+	 * Compiles the generated C++ arduino file with the Ftduino library and the
+	 * necessary files for the scratch runtime. If the same file has already been
+	 * compiled the cached result is used instead.
+	 *
+	 * @param is the input stream that represents the generated C++ arduino file.
+	 * @return The (compilation) log of the execution.
+	 * @throws CompilationFailedException when the compilation failed.
+	 */
+	public String compile(InputStream is) throws CompilationFailedException {
+		Objects.requireNonNull(is);
+		try (StagedSketch sketch = stageSketch(is, "compilation")) {
+			return compile(sketch);
+		}
+	}
+
+	/**
+	 * Compiles a staged C++ arduino file like {@link #compile(InputStream)}.
+	 *
+	 * @param sketch the staged C++ arduino file, it is still owned by the caller
+	 * @return The (compilation) log of the execution.
+	 * @throws CompilationFailedException when the compilation failed.
+	 */
+	public String compile(StagedSketch sketch) throws CompilationFailedException {
+		Objects.requireNonNull(sketch);
+		return compileCached(sketch, "compilation").readLog("compilation");
+	}
+
+	/**
+	 * Compiles the generated C++ arduino file with the Ftduino library and the
+	 * necessary files for the scratch runtime and uploads it to the Ftduino. If the
+	 * same file has already been compiled the cached hex file is uploaded without
+	 * compiling it again.
+	 *
+	 * @param is            the input stream that represents the generated C++
+	 *                      arduino file.
+	 * @param portSpecifier the port that will be used for uploading i.e. the port
+	 *                      the Ftduino is connected to.
+	 * @return The log of the execution.
+	 * @throws CompilationFailedException when the compilation or upload failed.
+	 */
+	public String upload(InputStream is, String portSpecifier) throws CompilationFailedException {
+		Objects.requireNonNull(is);
+		Objects.requireNonNull(portSpecifier);
+		try (StagedSketch sketch = stageSketch(is, "compilation and upload")) {
+			return upload(sketch, portSpecifier);
+		}
+	}
+
+	/**
+	 * Compiles and uploads a staged C++ arduino file like
+	 * {@link #upload(InputStream, String)}.
+	 *
+	 * @param sketch        the staged C++ arduino file, it is still owned by the
+	 *                      caller
+	 * @param portSpecifier the port that will be used for uploading i.e. the port
+	 *                      the Ftduino is connected to.
+	 * @return The log of the execution.
+	 * @throws CompilationFailedException when the compilation or upload failed.
+	 */
+	public String upload(StagedSketch sketch, String portSpecifier) throws CompilationFailedException {
+		Objects.requireNonNull(sketch);
+		Objects.requireNonNull(portSpecifier);
+		CachedResult result = compileCached(sketch, "compilation and upload");
+		String log = result.readLog("compilation and upload");
+		return log + flashPinned(result.entry.getKey(), portSpecifier);
+	}
+
+	/**
+	 * Compiles the generated C++ arduino file like {@link #compile(InputStream)}
+	 * but additionally returns the id of the compiled program. The id can be passed
+	 * to {@link #uploadArtifact(String, String)} to upload the program without
+	 * compiling it again.
+	 *
+	 * @param is the input stream that represents the generated C++ arduino file.
+	 * @return the id of the compiled program and the log of the compilation
+	 * @throws CompilationFailedException when the compilation failed.
+	 */
+	public CompileResult compileToArtifact(InputStream is) throws CompilationFailedException {
+		Objects.requireNonNull(is);
+		try (StagedSketch sketch = stageSketch(is, "compilation")) {
+			return compileToArtifact(sketch);
+		}
+	}
+
+	/**
+	 * Compiles a staged C++ arduino file like
+	 * {@link #compileToArtifact(InputStream)}.
+	 *
+	 * @param sketch the staged C++ arduino file, it is still owned by the caller
+	 * @return the id of the compiled program and the log of the compilation
+	 * @throws CompilationFailedException when the compilation failed.
+	 */
+	public CompileResult compileToArtifact(StagedSketch sketch) throws CompilationFailedException {
+		Objects.requireNonNull(sketch);
+		CachedResult result = compileCached(sketch, "compilation");
+		return new CompileResult(result.entry.getKey(), result.readLog("compilation"));
+	}
+
+	/**
+	 * Creates a temporary file the generated C++ arduino file can be written to
+	 * while it is generated. The caller has to close it once it has been compiled.
+	 *
+	 * @return the empty staged sketch
+	 * @throws CompilationFailedException when the file could not be created
+	 */
+	public StagedSketch stageSketch() throws CompilationFailedException {
+		try {
+			return new StagedSketch(Files.createTempFile(getStagingDir(), "sketch", ".ino"));
+		} catch (IOException e) {
+			throw new CompilationFailedException("Failed to create the necessary files for compilation.", e);
+		}
+	}
+
+	private StagedSketch stageSketch(InputStream is, String lowerCaseAction) throws CompilationFailedException {
+		StagedSketch sketch = stageSketch();
+		try {
+			sketch.transferFrom(is);
+		} catch (IOException e) {
+			sketch.close();
+			throw new CompilationFailedException("Failed to create the necessary files for " + lowerCaseAction + ".",
+					e);
+		}
+		return sketch;
+	}
+
+	/**
+	 * Uploads an already compiled program to the Ftduino. Only the flashing step is
+	 * executed, the program is not compiled again.
+	 *
+	 * @param artifactId    the id of the compiled program, see
+	 *                      {@link CompileResult#getArtifactId()}
+	 * @param portSpecifier the port that will be used for uploading i.e. the port
+	 *                      the Ftduino is connected to.
+	 * @return The log of the upload.
+	 * @throws ArtifactNotFoundException  when there is no compiled program with
+	 *                                    this id (anymore).
+	 * @throws CompilationFailedException when the upload failed.
+	 */
+	public String uploadArtifact(String artifactId, String portSpecifier) throws CompilationFailedException {
+		Objects.requireNonNull(artifactId);
+		Objects.requireNonNull(portSpecifier);
+		return flashPinned(artifactId, portSpecifier);
+	}
+
+	/**
+	 * Uploads the hex file of a cache entry. The entry is pinned, so that
+	 * compilations that finish in the meantime can not evict it during the
+	 * upload.
+	 */
+	private String flashPinned(String artifactId, String portSpecifier) throws CompilationFailedException {
+		CompileCache cache = getCache("upload");
+		CompileCache.Entry entry = cache.pin(artifactId);
+		if (entry == null) {
+			throw new ArtifactNotFoundException(
+					"There is no compiled program with the id " + artifactId + ". It has to be compiled again.");
+		}
+		try {
+			return flash(entry, portSpecifier);
+		} finally {
+			cache.unpin(entry);
+		}
+	}
+
+	/**
+	 * Returns the cached result or compiles the source. Callers that want to
+	 * compile the same source at the same time share a single compilation, see
+	 * {@link Flight}.
+	 */
+	private CachedResult compileCached(StagedSketch sketch, String lowerCaseAction)
+			throws CompilationFailedException {
+		CompileCache cache = getCache(lowerCaseAction);
+		String key;
+		try {
+			key = sketch.finish();
+		} catch (IOException e) {
+			throw new CompilationFailedException("Failed to create the necessary files for " + lowerCaseAction + ".",
+					e);
+		}
+		CompileCache.Entry entry = cache.get(key);
+		if (entry != null) {
+			return new CachedResult(entry, null);
+		}
+		Flight flight;
+		synchronized (flights) {
+			flight = flights.get(key);
+			if (flight == null) {
+				// the flight might outlive the caller who owns the staged sketch
+				Path source;
+				try {
+					source = getStagingDir().resolve(key + "-" + nextSourceId.getAndIncrement() + ".ino");
+					sketch.moveTo(source);
+				} catch (IOException e) {
+					throw new CompilationFailedException(
+							"Failed to create the necessary files for " + lowerCaseAction + ".", e);
+				}
+				flight = new Flight(source);
+				flights.put(key, flight);
+				Flight newFlight = flight;
+				flight.compilation = compileExecutor.submit(() -> {
+					try {
+						newFlight.result.complete(compileUncached(cache, key, source));
+					} catch (CompilationFailedException | RuntimeException e) {
+						newFlight.result.completeExceptionally(e);
+					} catch (Error e) {
+						// the waiters would wait forever otherwise
+						newFlight.result.completeExceptionally(e);
+						throw e;
+					} finally {
+						synchronized (flights) {
+							flights.remove(key, newFlight);
+						}
+						try {
+							Files.deleteIfExists(source);
+						} catch (IOException e) {
+							// the staging folder is deleted on exit
+						}
+					}
+				});
+			}
+			flight.waiters++;
+		}
+		try {
+			return flight.result.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CompilationFailedException) {
+				throw (CompilationFailedException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw (RuntimeException) e.getCause();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CompilationFailedException("Compilation got interrupted.", e);
+		} finally {
+			synchronized (flights) {
+				// nobody is interested in the result anymore
+				if (--flight.waiters == 0 && !flight.result.isDone()) {
+					flight.compilation.cancel(true);
+					flights.remove(key, flight);
+					// a compilation that has not started yet never deletes its source
+					try {
+						Files.deleteIfExists(flight.source);
+					} catch (IOException e) {
+						// the staging folder is deleted on exit
+					}
+				}
+			}
+		}
+	}
+
+	private CachedResult compileUncached(CompileCache cache, String key, Path source)
+			throws CompilationFailedException {
+		// an identical compilation might have finished in the meantime
+		CompileCache.Entry entry = cache.get(key);
+		if (entry != null) {
+			return new CachedResult(entry, null);
+		}
+		SketchWorkspace workspace = acquireWorkspace("Compilation");
+		try {
+			Path binary = getBinary("compilation");
+			try {
+				workspace.writeSketch(source);
+			} catch (IOException e) {
+				throw new CompilationFailedException("Failed to create the necessary files for compilation.", e);
+			}
+			String log = execute(binary, buildCompileCommand(binary, workspace), "Compilation",
+					compileTimeoutSeconds);
+			try {
+				return new CachedResult(cache.put(key, log, workspace.getHexFile()), log);
+			} catch (IOException e) {
+				throw new CompilationFailedException("Failed to store the result of the compilation.", e);
+			}
+		} finally {
+			releaseWorkspace(workspace);
+		}
+	}
+
+	private String flash(CompileCache.Entry entry, String portSpecifier) throws CompilationFailedException {
+		Path binary = getBinary("upload");
+		List<String> command;
+		try {
+			command = Arrays.asList(binary.toAbsolutePath().toString(), "upload", "--config-file",
+					getConfigFile(binary), "--fqbn", FQBN, "--port", portSpecifier, "--input",
+					entry.getHexFile().toAbsolutePath().toString(), "--verify",
+					getUploadSketchDir().toAbsolutePath().toString());
+		} catch (IOException e) {
+			throw new CompilationFailedException("Failed to create the necessary files for upload.", e);
+		}
+		return execute(binary, command, "Upload", uploadTimeoutSeconds);
+	}
+
+	/**
+	 * Executes arduino-cli. The process and all processes started by it are
+	 * stopped when the timeout expires or the current thread gets interrupted.
+	 */
+	private String execute(Path binary, List<String> command, String action, long timeoutSeconds)
+			throws CompilationFailedException {
+		try {
+			ProcessResult arduinoResult = new ProcessExecutor().command(command)
+					.directory(binary.getParent().toAbsolutePath().toFile()).destroyOnExit()
+					.stopper(ProcessTreeStopper.INSTANCE).exitValueNormal().readOutput(true)
+					.timeout(timeoutSeconds, TimeUnit.SECONDS).execute();
+			return arduinoResult.outputUTF8();
+		} catch (TimeoutException e) {
+			throw new CompilationFailedException(
+					action + " did not finish within " + timeoutSeconds + " seconds and has been stopped.", e);
+		} catch (IOException e) {
+			throw new CompilationFailedException(
+					"Failed to start the " + action.toLowerCase(Locale.ROOT) + " process.", e);
+		} catch (InvalidExitValueException e) {
+			throw new CompilationFailedException(
+					action + " did not exit with exit value 0. Exit value: " + e.getExitValue(), e,
+					e.getResult().outputUTF8());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CompilationFailedException(action + " got interrupted.", e);
+		}
+	}
+
+	private List<String> buildCompileCommand(Path binary, SketchWorkspace workspace)
+			throws CompilationFailedException {
+		try {
+			return Arrays.asList(binary.toAbsolutePath().toString(), "compile", "--config-file",
+					getConfigFile(binary), "--fqbn", FQBN, "--build-path",
+					workspace.getBuildDir().toAbsolutePath().toString(), "--build-cache-path",
+					getCoreCacheDir().toAbsolutePath().toString(), workspace.getSketchDir().toAbsolutePath().toString());
+		} catch (IOException e) {
+			throw new CompilationFailedException("Failed to create the necessary files for compilation.", e);
+		}
+	}
+
+	private static String getConfigFile(Path binary) {
+		return binary.resolveSibling("arduino-cli.yaml").toAbsolutePath().toString();
+	}
+
+	private static Path getBinary(String lowerCaseAction) throws CompilationFailedException {
+		try {
+			return ArduinoCLI.getArduinoCliBinary();
+		} catch (BinaryNotFoundException e) {
+			throw new CompilationFailedException("Failed to locate the binary used for " + lowerCaseAction + ".", e);
+		}
+	}
+
+	/**
+	 * A cache entry together with the log of the compilation, if it has just been
+	 * compiled. This saves reading the log back from the disk.
+	 */
+	private static class CachedResult {
+		private final CompileCache.Entry entry;
+		private final String log;
+
+		private CachedResult(CompileCache.Entry entry, String log) {
+			this.entry = entry;
+			this.log = log;
+		}
+
+		private String readLog(String lowerCaseAction) throws CompilationFailedException {
+			if (log != null) {
+				return log;
+			}
+			try {
+				return entry.readLog();
+			} catch (IOException e) {
+				throw new CompilationFailedException("Failed to read the cached log for " + lowerCaseAction + ".", e);
+			}
+		}
+	}
+
+	private SketchWorkspace acquireWorkspace(String action) throws CompilationFailedException {
+		try {
+			workspacePermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CompilationFailedException(action + " got interrupted.", e);
+		}
+		SketchWorkspace workspace = idleWorkspaces.pollFirst();
+		if (workspace == null) {
+			try {
+				workspace = SketchWorkspace.create(getRootDir(), nextWorkspaceId.getAndIncrement());
+			} catch (IOException e) {
+				workspacePermits.release();
+				throw new CompilationFailedException(
+						"Failed to create the necessary files for " + action.toLowerCase(Locale.ROOT) + ".", e);
+			}
+		}
+		return workspace;
+	}
+
+	private void releaseWorkspace(SketchWorkspace workspace) {
+		idleWorkspaces.offerFirst(workspace);
+		workspacePermits.release();
+	}
+
+	private Path getStagingDir() throws IOException {
+		return Files.createDirectories(getRootDir().resolve("staging"));
+	}
+
+	private Path getCoreCacheDir() throws IOException {
+		return Files.createDirectories(getRootDir().resolve("core-cache"));
+	}
+
+	/**
+	 * arduino-cli requires a sketch even if a pre-built hex file is uploaded, so an
+	 * empty one is used.
+	 */
+	private Path getUploadSketchDir() throws IOException {
+		Path sketchDir = Files.createDirectories(getRootDir().resolve("upload"));
+		Path sketchFile = sketchDir.resolve("upload.ino");
+		if (!Files.exists(sketchFile)) {
+			Files.createFile(sketchFile);
+		}
+		return sketchDir;
+	}
+
+	private synchronized CompileCache getCache(String lowerCaseAction) throws CompilationFailedException {
+		Path cacheDir = Paths.get(System.getProperty("ftd.compile.cache.dir",
+				Paths.get(System.getProperty("java.io.tmpdir"), "ftd-compile-cache").toString()));
+		// the folder is looked up every time, so that e.g. tests can use their own one
+		if (cache == null || !cache.getCacheDir().equals(cacheDir)) {
+			try {
+				cache = new CompileCache(cacheDir, Long.getLong("ftd.compile.cache.size", DEFAULT_CACHE_SIZE));
+			} catch (IOException e) {
+				throw new CompilationFailedException(
+						"Failed to create the necessary files for " + lowerCaseAction + ".", e);
+			}
+		}
+		return cache;
+	}
+
+	private synchronized Path getRootDir() throws IOException {
+		if (rootDir == null) {
+			Path dir = Files.createTempDirectory("scratch-compile");
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteOnShutdown(dir)));
+			rootDir = dir;
+		}
+		return rootDir;
+	}
+
+	/**
+	 * Deletes the folder and its content when the JVM shuts down. The class loader
+	 * of the application might already be closed then, e.g. in a test launcher,
+	 * so only classes of the JDK are used.
+	 */
+	private static void deleteOnShutdown(Path dir) {
+		List<Path> paths;
+		try (Stream<Path> walk = Files.walk(dir)) {
+			// the content of a folder comes after the folder
+			paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+		} catch (IOException | UncheckedIOException e) {
+			e.printStackTrace();
+			return;
+		}
+		for (Path path : paths) {
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.github.intrigus.ftd.compile;
+
+import org.zeroturnaround.exec.stop.ProcessStopper;
+
+/**
+ * Stops a process together with all of its descendants. arduino-cli starts
+ * avr-gcc and avrdude as child processes, which would keep running if only
+ * arduino-cli itself was stopped.
+ */
+class ProcessTreeStopper implements ProcessStopper {
+	static final ProcessTreeStopper INSTANCE = new ProcessTreeStopper();
+
+	private ProcessTreeStopper() {
+	}
+
+	@Override
+	public void stop(Process process) {
+		// the descendants have to be collected before the parent is stopped,
+		// otherwise they are no longer known as its descendants
+		process.toHandle().descendants().forEach(ProcessHandle::destroyForcibly);
+		process.destroyForcibly();
+	}
+}
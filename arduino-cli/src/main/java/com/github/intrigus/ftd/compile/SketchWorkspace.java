@@ -0,0 +1,73 @@
+package com.github.intrigus.ftd.compile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A sketch folder together with its own build folder. arduino-cli only reuses
+ * the objects inside a build folder if the sketch location does not change,
+ * that's why a workspace always compiles the same sketch file and only its
+ * content is replaced. The Ftduino core and the libraries are therefore only
+ * compiled the first time a workspace is used.
+ */
+class SketchWorkspace {
+	private static final String SKETCH_NAME = "sketch";
+
+	private final Path sketchDir;
+	private final Path sketchFile;
+	private final Path buildDir;
+
+	private SketchWorkspace(Path workspaceDir) {
+		this.sketchDir = workspaceDir.resolve(SKETCH_NAME);
+		this.sketchFile = sketchDir.resolve(SKETCH_NAME + ".ino");
+		this.buildDir = workspaceDir.resolve("build");
+	}
+
+	/**
+	 * Creates a new workspace inside the given directory.
+	 *
+	 * @param parentDir the directory that will contain the workspace
+	 * @param id        an id that is unique for every workspace in parentDir
+	 * @return the created workspace
+	 * @throws IOException if the necessary folders could not be created
+	 */
+	static SketchWorkspace create(Path parentDir, int id) throws IOException {
+		SketchWorkspace workspace = new SketchWorkspace(parentDir.resolve("workspace" + id));
+		Files.createDirectories(workspace.sketchDir);
+		Files.createDirectories(workspace.buildDir);
+		return workspace;
+	}
+
+	/**
+	 * Replaces the content of the sketch file of this workspace.
+	 *
+	 * @param source the file that contains the generated C++ arduino file.
+	 * @throws IOException if the sketch file could not be written
+	 */
+	void writeSketch(Path source) throws IOException {
+		Files.copy(source, sketchFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * The folder that has to be passed to arduino-cli as sketch path.
+	 */
+	Path getSketchDir() {
+		return sketchDir;
+	}
+
+	/**
+	 * The folder that has to be passed to arduino-cli as build path.
+	 */
+	Path getBuildDir() {
+		return buildDir;
+	}
+
+	/**
+	 * The hex file that is produced by compiling the sketch of this workspace.
+	 */
+	Path getHexFile() {
+		return buildDir.resolve(SKETCH_NAME + ".ino.hex");
+	}
+}
@@ -0,0 +1,95 @@
+package com.github.intrigus.ftd.compile;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+
+/**
+ * A generated C++ arduino file that is written to a temporary file before it is
+ * compiled. The code can be written directly into the file while it is
+ * generated, so that it never has to be kept in memory as a whole. The key of
+ * the {@link CompileCache} is computed on the fly.
+ * <p>
+ * Get one from {@link CompileService#stageSketch()}, write the code to
+ * {@link #getWriter()} and then pass it to the {@link CompileService}. Closing
+ * it deletes the temporary file.
+ * </p>
+ */
+public class StagedSketch implements Closeable {
+	private final Path file;
+	private final MessageDigest digest = CompileCache.newKeyDigest();
+	private final OutputStream out;
+	private final Writer writer;
+	private String key;
+
+	StagedSketch(Path file) throws IOException {
+		this.file = file;
+		this.out = new DigestOutputStream(Files.newOutputStream(file), digest);
+		this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Returns the writer that receives the generated C++ arduino file. The code is
+	 * encoded using UTF8.
+	 *
+	 * @return the writer
+	 */
+	public Writer getWriter() {
+		return writer;
+	}
+
+	/**
+	 * Copies the generated C++ arduino file from the input stream.
+	 */
+	void transferFrom(InputStream is) throws IOException {
+		writer.flush();
+		is.transferTo(out);
+	}
+
+	/**
+	 * Finishes writing and returns the key of the written source, see
+	 * {@link CompileCache#computeKey(byte[])}.
+	 */
+	String finish() throws IOException {
+		if (key == null) {
+			writer.close();
+			key = CompileCache.toKey(digest);
+		}
+		return key;
+	}
+
+	/**
+	 * Moves the written file to the target, so that it stays available after this
+	 * sketch has been closed. {@link #finish()} has to be called first.
+	 */
+	void moveTo(Path target) throws IOException {
+		Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Deletes the temporary file.
+	 */
+	@Override
+	public void close() {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			// the file is deleted anyway
+		}
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// it's in the temporary folder of the compile service which is deleted on exit
+		}
+	}
+}
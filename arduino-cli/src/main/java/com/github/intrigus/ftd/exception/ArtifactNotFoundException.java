@@ -0,0 +1,15 @@
+package com.github.intrigus.ftd.exception;
+
+/**
+ * Thrown when a compiled program should be uploaded that is not (or no longer)
+ * available, e.g. because it has been evicted from the cache. The program has
+ * to be compiled again in this case.
+ */
+@SuppressWarnings("serial")
+public class ArtifactNotFoundException extends CompilationFailedException {
+
+	public ArtifactNotFoundException(String message) {
+		super(message, null);
+	}
+
+}
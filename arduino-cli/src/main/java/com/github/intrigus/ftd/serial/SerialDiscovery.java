@@ -13,12 +13,13 @@ import java.util.Objects;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.intrigus.ftd.exception.BinaryNotFoundException;
 import com.github.intrigus.ftd.exception.CompilationFailedException;
 import com.github.intrigus.ftd.exception.ComputationFailedException;
 import com.github.intrigus.ftd.serial.SerialDisoveryMessage.ListMessage;
+import com.github.intrigus.ftd.util.JsonUtil;
 import com.github.intrigus.ftd.util.OsUtil;
+import com.github.intrigus.ftd.util.ToolchainVersions;
 
 /**
  * Gives access to the "serial-discovery" program that is included with
@@ -157,7 +158,7 @@ public class SerialDiscovery {
 		Objects.requireNonNull(workingDir);
 		String directory = OsUtil.getTargetName();
 		Path path = workingDir.resolve(Paths.get("arduino_cli", directory, "packages", "builtin", "tools",
-				"serial-discovery", "1.0.0", OsUtil.mapExecutableName("serial-discovery"))).toAbsolutePath();
+				"serial-discovery", ToolchainVersions.SERIAL_DISCOVERY_VERSION, OsUtil.mapExecutableName("serial-discovery"))).toAbsolutePath();
 		if (!Files.exists(path)) {
 			throw new BinaryNotFoundException(
 					"The binary for the os could not be found. os.name: " + System.getProperty("os.name") + " os.arch: "
@@ -168,7 +169,6 @@ public class SerialDiscovery {
 
 	private static <T> T fromJson(String input, Class<T> javaType)
 			throws JsonParseException, JsonMappingException, IOException {
-		ObjectMapper mapper = new ObjectMapper();
-		return (T) mapper.readValue(input, javaType);
+		return JsonUtil.readerFor(javaType).readValue(input);
 	}
 }
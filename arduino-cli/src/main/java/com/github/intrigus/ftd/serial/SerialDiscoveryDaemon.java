@@ -10,9 +10,9 @@ import java.util.List;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.intrigus.ftd.exception.BinaryNotFoundException;
 import com.github.intrigus.ftd.exception.ComputationFailedException;
+import com.github.intrigus.ftd.util.JsonUtil;
 
 /**
  * Gives access to the "serial-discovery" program that is included with
@@ -122,7 +122,6 @@ public class SerialDiscoveryDaemon {
 
 	private static <T> T fromJson(String input, Class<T> javaType)
 			throws JsonParseException, JsonMappingException, IOException {
-		ObjectMapper mapper = new ObjectMapper();
-		return (T) mapper.readValue(input, javaType);
+		return JsonUtil.readerFor(javaType).readValue(input);
 	}
 }
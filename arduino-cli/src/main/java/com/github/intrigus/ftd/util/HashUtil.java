@@ -0,0 +1,34 @@
+package com.github.intrigus.ftd.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class HashUtil {
+	/**
+	 * Creates a new SHA-256 digest.
+	 *
+	 * @return the digest
+	 */
+	public static MessageDigest newSha256Digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Encodes the hash as lower case hex String.
+	 *
+	 * @param hash the hash
+	 * @return the hex encoded hash
+	 */
+	public static String toHex(byte[] hash) {
+		StringBuilder hex = new StringBuilder(hash.length * 2);
+		for (byte b : hash) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,57 @@
+package com.github.intrigus.ftd.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Gives access to a single shared {@link ObjectMapper}. Creating a mapper is
+ * expensive and every mapper has its own caches of the serializers and
+ * deserializers, so the mapper should never be created per request.
+ * <p>
+ * The mapper is never reconfigured after it has been created, so it and the
+ * readers and writers created from it can be used from multiple threads at the
+ * same time.
+ * </p>
+ */
+public class JsonUtil {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final ObjectWriter WRITER = MAPPER.writer();
+	private static final ObjectReader STRING_LIST_READER = MAPPER
+			.readerFor(MAPPER.getTypeFactory().constructCollectionType(List.class, String.class));
+	private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the reader for the given type. The readers are created once and then
+	 * reused.
+	 *
+	 * @param type the type of the value that should be read
+	 * @return the reader
+	 */
+	public static ObjectReader readerFor(Class<?> type) {
+		return READERS.computeIfAbsent(type, MAPPER::readerFor);
+	}
+
+	/**
+	 * Returns the reader for a json array of Strings, i.e. a
+	 * {@code List<String>}.
+	 *
+	 * @return the reader
+	 */
+	public static ObjectReader stringListReader() {
+		return STRING_LIST_READER;
+	}
+
+	/**
+	 * Returns the writer that converts values to json.
+	 *
+	 * @return the writer
+	 */
+	public static ObjectWriter writer() {
+		return WRITER;
+	}
+}
@@ -0,0 +1,42 @@
+package com.github.intrigus.ftd.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A map that is ordered from the least to the most recently used entry. Getting
+ * or putting an entry makes it the most recently used one, so iterating the map
+ * starts with the entries that should be evicted first. Like
+ * {@link LinkedHashMap} it is not thread-safe.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class LruMap<K, V> extends LinkedHashMap<K, V> {
+	private static final long serialVersionUID = 1L;
+
+	private final int maxEntries;
+
+	/**
+	 * Creates a map whose entries are only evicted by the caller.
+	 */
+	public LruMap() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a map that evicts the least recently used entry once it contains
+	 * more than the given number of entries.
+	 *
+	 * @param maxEntries the maximum number of entries
+	 */
+	public LruMap(int maxEntries) {
+		super(16, 0.75f, true);
+		this.maxEntries = maxEntries;
+	}
+
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+		return size() > maxEntries;
+	}
+}
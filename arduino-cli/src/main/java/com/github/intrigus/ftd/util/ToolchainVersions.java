@@ -0,0 +1,16 @@
+package com.github.intrigus.ftd.util;
+
+/**
+ * The versions of the bundled toolchain. They are used by the build to download
+ * the toolchain and at runtime to locate the tools and to invalidate everything
+ * that has been built with another toolchain.
+ */
+public class ToolchainVersions {
+	public static final String ARDUINO_VERSION = "1.8.1";
+	public static final String ARDUINO_CLI_VERSION = "0.7.1";
+	public static final String FTDUINO_VERSION = "0.0.14";
+	public static final String SERIAL_DISCOVERY_VERSION = "1.0.0";
+
+	private ToolchainVersions() {
+	}
+}
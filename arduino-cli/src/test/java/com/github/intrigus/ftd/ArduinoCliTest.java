@@ -5,13 +5,34 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.nio.file.Path;
 
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import com.github.intrigus.ftd.exception.CompilationFailedException;
 
 public class ArduinoCliTest {
 
+	@TempDir
+	public static Path compileCacheDir;
+
+	/**
+	 * Makes sure that the sketches are really compiled and not taken from the
+	 * cache of a previous run.
+	 */
+	@BeforeAll
+	public static void useEmptyCompileCache() {
+		System.setProperty("ftd.compile.cache.dir", compileCacheDir.toString());
+	}
+
+	@AfterAll
+	public static void resetCompileCache() {
+		System.clearProperty("ftd.compile.cache.dir");
+	}
+
 	@Test
 	public void testFailingCompilation() {
 		InputStream failingFile = Thread.currentThread().getContextClassLoader().getResourceAsStream("failing.c");
@@ -0,0 +1,117 @@
+package com.github.intrigus.ftd.compile;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CompileCacheTest {
+
+	@TempDir
+	Path tempDir;
+
+	private Path createHexFile(int size) throws IOException {
+		return Files.write(tempDir.resolve("input.hex"), new byte[size]);
+	}
+
+	@Test
+	public void testKeyDependsOnSource() {
+		byte[] source = "void setup() {}".getBytes(StandardCharsets.UTF_8);
+		assertEquals(CompileCache.computeKey(source), CompileCache.computeKey(source.clone()));
+		assertNotEquals(CompileCache.computeKey(source),
+				CompileCache.computeKey("void loop() {}".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testLibraryHashDependsOnFiles() throws IOException {
+		Path library = Files.createDirectories(tempDir.resolve("library").resolve("src"));
+		Files.write(library.resolve("cast.cpp"), "float toNumber(float);".getBytes(StandardCharsets.UTF_8));
+		byte[] hash = CompileCache.hashDirectory(tempDir.resolve("library"));
+		assertArrayEquals(hash, CompileCache.hashDirectory(tempDir.resolve("library")));
+
+		Files.write(library.resolve("cast.cpp"), "float toNumber(double);".getBytes(StandardCharsets.UTF_8));
+		byte[] changedHash = CompileCache.hashDirectory(tempDir.resolve("library"));
+		assertFalse(Arrays.equals(hash, changedHash));
+
+		Files.move(library.resolve("cast.cpp"), library.resolve("operators.cpp"));
+		assertFalse(Arrays.equals(changedHash, CompileCache.hashDirectory(tempDir.resolve("library"))));
+		assertNull(CompileCache.hashDirectory(tempDir.resolve("missing")));
+	}
+
+	@Test
+	public void testStagedSketchComputesKey() throws IOException {
+		String source = "void setup() {}\n// \u00e4\u00f6\u00fc";
+		try (StagedSketch sketch = new StagedSketch(tempDir.resolve("sketch.ino"))) {
+			sketch.getWriter().write(source);
+			assertEquals(CompileCache.computeKey(source.getBytes(StandardCharsets.UTF_8)), sketch.finish());
+		}
+		assertFalse(Files.exists(tempDir.resolve("sketch.ino")));
+	}
+
+	@Test
+	public void testPutAndGet() throws IOException {
+		CompileCache cache = new CompileCache(tempDir.resolve("cache"), 1024);
+		String key = CompileCache.computeKey(new byte[] { 1 });
+		assertNull(cache.get(key));
+		cache.put(key, "log", createHexFile(10));
+		CompileCache.Entry entry = cache.get(key);
+		assertNotNull(entry);
+		assertEquals("log", entry.readLog());
+		assertEquals(10, Files.size(entry.getHexFile()));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntryIsEvicted() throws IOException {
+		CompileCache cache = new CompileCache(tempDir.resolve("cache"), 250);
+		String first = CompileCache.computeKey(new byte[] { 1 });
+		String second = CompileCache.computeKey(new byte[] { 2 });
+		String third = CompileCache.computeKey(new byte[] { 3 });
+		cache.put(first, "", createHexFile(100));
+		cache.put(second, "", createHexFile(100));
+		// makes the second entry the least recently used one
+		assertNotNull(cache.get(first));
+		cache.put(third, "", createHexFile(100));
+		assertNotNull(cache.get(first));
+		assertNull(cache.get(second));
+		assertNotNull(cache.get(third));
+	}
+
+	@Test
+	public void testPinnedEntryIsNotEvicted() throws IOException {
+		CompileCache cache = new CompileCache(tempDir.resolve("cache"), 250);
+		String first = CompileCache.computeKey(new byte[] { 1 });
+		String second = CompileCache.computeKey(new byte[] { 2 });
+		String third = CompileCache.computeKey(new byte[] { 3 });
+		cache.put(first, "", createHexFile(100));
+		CompileCache.Entry pinned = cache.pin(first);
+		cache.put(second, "", createHexFile(100));
+		cache.put(third, "", createHexFile(100));
+		assertTrue(Files.exists(pinned.getHexFile()));
+		assertNull(cache.get(second));
+
+		cache.unpin(pinned);
+		cache.put(second, "", createHexFile(100));
+		assertFalse(Files.exists(pinned.getHexFile()));
+	}
+
+	@Test
+	public void testEntriesSurviveRestart() throws IOException {
+		String key = CompileCache.computeKey(new byte[] { 1 });
+		new CompileCache(tempDir.resolve("cache"), 1024).put(key, "log", createHexFile(10));
+		CompileCache.Entry entry = new CompileCache(tempDir.resolve("cache"), 1024).get(key);
+		assertNotNull(entry);
+		assertEquals("log", entry.readLog());
+	}
+}
@@ -28,6 +28,7 @@ import org.gradle.api.tasks.TaskAction;
 
 import com.github.intrigus.ftd.internal.util.FileUtil;
 import com.github.intrigus.ftd.util.OsUtil;
+import com.github.intrigus.ftd.util.ToolchainVersions;
 
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -68,10 +69,10 @@ public class ArduinoCliCreator extends DefaultTask {
 
 	}
 
-	private static final String ARDUINO_VERSION = "1.8.1";
-	private static final String ARDUINO_CLI_VERSION = "0.7.1";
-	private static final String FTDUINO_VERSION = "0.0.14";
-	private static final String SERIAL_DISCOVERY_VERSION = "1.0.0";
+	private static final String ARDUINO_VERSION = ToolchainVersions.ARDUINO_VERSION;
+	private static final String ARDUINO_CLI_VERSION = ToolchainVersions.ARDUINO_CLI_VERSION;
+	private static final String FTDUINO_VERSION = ToolchainVersions.FTDUINO_VERSION;
+	private static final String SERIAL_DISCOVERY_VERSION = ToolchainVersions.SERIAL_DISCOVERY_VERSION;
 
 	private static final UrlsForOS LINUX_64 = new UrlsForOS("LINUX_64",
 			"https://downloads.arduino.cc/arduino-cli/arduino-cli_" + ARDUINO_CLI_VERSION + "_Linux_64bit.tar.gz",
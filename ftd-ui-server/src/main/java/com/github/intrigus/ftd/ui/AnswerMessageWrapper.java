@@ -12,9 +12,17 @@ public class AnswerMessageWrapper extends MessageWrapper {
 	@JsonProperty(value = "result")
 	private String result;
 
+	@JsonProperty(value = "artifactId")
+	private String artifactId;
+
 	public AnswerMessageWrapper(Status status, String errorMessage, String result) {
+		this(status, errorMessage, result, null);
+	}
+
+	public AnswerMessageWrapper(Status status, String errorMessage, String result, String artifactId) {
 		this.status = status;
 		this.errorMessage = errorMessage;
 		this.result = result;
+		this.artifactId = artifactId;
 	}
 }
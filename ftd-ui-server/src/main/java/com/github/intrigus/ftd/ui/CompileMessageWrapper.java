@@ -10,6 +10,13 @@ public class CompileMessageWrapper extends MessageWrapper {
 	@JsonProperty(value = "serialPort")
 	private String serialPort;
 
+	/**
+	 * The id of an already compiled program, see the artifactId of the /compile
+	 * answer. If present, the program is uploaded without compiling it again.
+	 */
+	@JsonProperty(value = "artifactId")
+	private String artifactId;
+
 	public String getCode() {
 		return code;
 	}
@@ -18,4 +25,8 @@ public class CompileMessageWrapper extends MessageWrapper {
 		return serialPort;
 	}
 
+	public String getArtifactId() {
+		return artifactId;
+	}
+
 }
@@ -0,0 +1,145 @@
+package com.github.intrigus.ftd.ui;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the compile and upload requests. Only a fixed number of requests are
+ * processed at once, the others wait in a bounded queue. If the queue is full,
+ * new requests are rejected immediately, so that the machine is not overloaded
+ * when a whole class compiles at the same time.
+ * <p>
+ * The duration of the finished requests is used to estimate how long a request
+ * has to wait.
+ * </p>
+ */
+class CompileQueue {
+	// weight of the newest duration in the moving average
+	private static final double DURATION_WEIGHT = 0.2;
+	private static final long INITIAL_DURATION_ESTIMATE_MILLIS = 10_000;
+
+	private final ThreadPoolExecutor executor;
+	private final int workers;
+	private volatile double averageDurationMillis = INITIAL_DURATION_ESTIMATE_MILLIS;
+
+	/**
+	 * A queued request. The ticket is chosen by the client and can be used to ask
+	 * for the position of the request in the queue.
+	 */
+	private class Job extends FutureTask<Void> {
+		private final String ticket;
+
+		private Job(String ticket, Runnable task) {
+			super(() -> {
+				long start = System.nanoTime();
+				try {
+					task.run();
+				} finally {
+					recordDuration(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+				}
+			}, null);
+			this.ticket = ticket;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			// frees the place in the queue right away if it did not run yet
+			executor.remove(this);
+			return cancelled;
+		}
+	}
+
+	/**
+	 * Creates a new queue.
+	 *
+	 * @param workers  the number of requests that are processed at the same time
+	 * @param capacity the number of requests that can wait
+	 */
+	CompileQueue(int workers, int capacity) {
+		this.workers = workers;
+		AtomicInteger threadId = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "compile-worker-" + threadId.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(capacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Creates a new queue that is configured using the
+	 * {@code ftd.server.compile.workers} (default: number of processors) and
+	 * {@code ftd.server.compile.queue} (default: 64) system properties.
+	 *
+	 * @return the new queue
+	 */
+	static CompileQueue fromSystemProperties() {
+		int workers = Math.max(1,
+				Integer.getInteger("ftd.server.compile.workers", Runtime.getRuntime().availableProcessors()));
+		int capacity = Math.max(1, Integer.getInteger("ftd.server.compile.queue", 64));
+		return new CompileQueue(workers, capacity);
+	}
+
+	/**
+	 * Queues a request.
+	 *
+	 * @param ticket the ticket chosen by the client, may be {@code null}
+	 * @param task   the request
+	 * @return a future that can be used to cancel the request. A running request is
+	 *         interrupted.
+	 * @throws RejectedExecutionException if the queue is full
+	 */
+	Future<?> submit(String ticket, Runnable task) throws RejectedExecutionException {
+		Job job = new Job(ticket, task);
+		executor.execute(job);
+		return job;
+	}
+
+	/**
+	 * Returns the state of the queue for the request with the given ticket. If
+	 * there is no waiting request with this ticket, the state for a new request is
+	 * returned.
+	 *
+	 * @param ticket the ticket of the request, may be {@code null}
+	 * @return the state of the queue
+	 */
+	QueueMessageWrapper getPosition(String ticket) {
+		Object[] waiting = executor.getQueue().toArray();
+		int position = -1;
+		if (ticket != null) {
+			for (int i = 0; i < waiting.length; i++) {
+				if (ticket.equals(((Job) waiting[i]).ticket)) {
+					position = i;
+					break;
+				}
+			}
+		}
+		int requestsInFront = position == -1 ? waiting.length : position;
+		return new QueueMessageWrapper(position, waiting.length, estimateWaitMillis(requestsInFront));
+	}
+
+	/**
+	 * Estimates the time until a request with the given number of requests in
+	 * front of it starts running.
+	 */
+	private long estimateWaitMillis(int requestsInFront) {
+		int busyWorkers = executor.getActiveCount();
+		if (requestsInFront == 0 && busyWorkers < workers) {
+			return 0;
+		}
+		// every worker finishes its current request on average after half the time
+		return Math.round((requestsInFront / workers + 0.5) * averageDurationMillis);
+	}
+
+	private synchronized void recordDuration(long durationMillis) {
+		averageDurationMillis = DURATION_WEIGHT * durationMillis + (1 - DURATION_WEIGHT) * averageDurationMillis;
+	}
+}
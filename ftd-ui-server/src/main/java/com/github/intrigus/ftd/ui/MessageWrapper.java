@@ -3,6 +3,6 @@ package com.github.intrigus.ftd.ui;
 public class MessageWrapper {
 
 	public static enum Status {
-		SUCCESS, FAILED
+		SUCCESS, FAILED, BUSY
 	}
 }
@@ -0,0 +1,106 @@
+package com.github.intrigus.ftd.ui;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.xnio.XnioExecutor;
+
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * The answer to a request that waits in the {@link CompileQueue} or is being
+ * processed by it.
+ * <p>
+ * A closed connection is only noticed when something is written to it. That's
+ * why a single space is sent every few seconds until the answer is ready. The
+ * leading whitespace is ignored by JSON parsers. If the space can not be sent,
+ * the client is gone and the request is cancelled, so that an abandoned
+ * compilation does not keep running. All fields are only accessed from the IO
+ * thread of the exchange.
+ * </p>
+ */
+class PendingAnswer {
+	private static final long HEARTBEAT_INTERVAL_SECONDS = 2;
+
+	private final HttpServerExchange exchange;
+	private Future<?> request;
+	private XnioExecutor.Key heartbeat;
+	private boolean sendingHeartbeat;
+	private String answer;
+
+	PendingAnswer(HttpServerExchange exchange) {
+		this.exchange = exchange;
+	}
+
+	/**
+	 * Starts watching the connection. The request is cancelled if the client
+	 * closes the connection before the answer has been sent.
+	 *
+	 * @param request the queued request
+	 */
+	void watch(Future<?> request) {
+		exchange.getIoThread().execute(() -> {
+			this.request = request;
+			scheduleHeartbeat();
+		});
+	}
+
+	/**
+	 * Sends the answer to the client. May be called from any thread.
+	 *
+	 * @param answer the answer
+	 */
+	void complete(String answer) {
+		exchange.getIoThread().execute(() -> {
+			this.answer = answer;
+			if (heartbeat != null) {
+				heartbeat.remove();
+			}
+			if (!sendingHeartbeat) {
+				sendAnswer();
+			}
+		});
+	}
+
+	private void scheduleHeartbeat() {
+		if (answer != null || exchange.isComplete()) {
+			return;
+		}
+		heartbeat = exchange.getIoThread().executeAfter(this::sendHeartbeat, HEARTBEAT_INTERVAL_SECONDS,
+				TimeUnit.SECONDS);
+	}
+
+	private void sendHeartbeat() {
+		if (answer != null || exchange.isComplete()) {
+			return;
+		}
+		sendingHeartbeat = true;
+		exchange.getResponseSender().send(" ", new IoCallback() {
+			@Override
+			public void onComplete(HttpServerExchange exchange, Sender sender) {
+				sendingHeartbeat = false;
+				if (answer != null) {
+					sendAnswer();
+				} else {
+					scheduleHeartbeat();
+				}
+			}
+
+			@Override
+			public void onException(HttpServerExchange exchange, Sender sender, IOException exception) {
+				sendingHeartbeat = false;
+				request.cancel(true);
+				IoCallback.END_EXCHANGE.onException(exchange, sender, exception);
+			}
+		});
+	}
+
+	private void sendAnswer() {
+		if (!exchange.isComplete()) {
+			exchange.getResponseSender().send(answer);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.github.intrigus.ftd.ui;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The state of the compile queue, as seen by a single request.
+ */
+public class QueueMessageWrapper extends MessageWrapper {
+
+	/**
+	 * Number of requests that are waiting in front of the request. {@code -1} if
+	 * the request is not waiting, i.e. it is running, finished or unknown.
+	 */
+	@JsonProperty(value = "position")
+	private int position;
+
+	/**
+	 * Number of requests that are waiting in total.
+	 */
+	@JsonProperty(value = "queueLength")
+	private int queueLength;
+
+	/**
+	 * The estimated time until the request starts running.
+	 */
+	@JsonProperty(value = "estimatedWaitMillis")
+	private long estimatedWaitMillis;
+
+	public QueueMessageWrapper(int position, int queueLength, long estimatedWaitMillis) {
+		this.position = position;
+		this.queueLength = queueLength;
+		this.estimatedWaitMillis = estimatedWaitMillis;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+	public int getQueueLength() {
+		return queueLength;
+	}
+
+	public long getEstimatedWaitMillis() {
+		return estimatedWaitMillis;
+	}
+}
@@ -1,19 +1,28 @@
 package com.github.intrigus.ftd.ui;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.intrigus.ftd.ArduinoCLI;
+import com.github.intrigus.ftd.ConversionCache;
 import com.github.intrigus.ftd.Sb3ToArduinoC;
+import com.github.intrigus.ftd.compile.CompileResult;
+import com.github.intrigus.ftd.compile.StagedSketch;
+import com.github.intrigus.ftd.exception.ArtifactNotFoundException;
 import com.github.intrigus.ftd.serial.SerialDevice;
 import com.github.intrigus.ftd.serial.SerialDiscovery;
 import com.github.intrigus.ftd.ui.MessageWrapper.Status;
+import com.github.intrigus.ftd.util.JsonUtil;
 import com.github.intrigus.ftd.util.ThrowableUtil;
 
 import io.undertow.Undertow;
@@ -25,6 +34,7 @@ import io.undertow.server.handlers.resource.ResourceHandler;
 import io.undertow.server.handlers.resource.ResourceManager;
 import io.undertow.util.Headers;
 import io.undertow.util.HttpString;
+import io.undertow.util.SameThreadExecutor;
 
 public class Server {
 
@@ -35,8 +45,9 @@ public class Server {
 
 	/**
 	 * Returns a new server ready for serving the scratch web app and providing the
-	 * convert, compile, upload and ftduino enumeration function. You then only have
-	 * to call #start() on the server. The server will listen on the specified port.
+	 * convert, compile, upload, compile queue and ftduino enumeration function.
+	 * You then only have to call #start() on the server. The server will listen on
+	 * the specified port.
 	 * 
 	 * @param port the port the server will listen on
 	 * @return a new server read for use
@@ -46,8 +57,10 @@ public class Server {
 		PathHandler handler = new PathHandler();
 
 		addConvertHandler(handler);
-		addCompileHandler(handler);
-		addUploadHandler(handler);
+		CompileQueue compileQueue = CompileQueue.fromSystemProperties();
+		addCompileHandler(handler, compileQueue);
+		addUploadHandler(handler, compileQueue);
+		addQueueHandler(handler, compileQueue);
 		addConnectedFtduinoHandler(handler);
 		addScratchFilesHandler(handler);
 
@@ -62,6 +75,9 @@ public class Server {
 	}
 
 	private static void addConvertHandler(PathHandler handler) {
+		int cacheSize = Math.max(1, Integer.getInteger("ftd.server.convert.cache.size", 256));
+		long cacheAge = Math.max(0, Long.getLong("ftd.server.convert.cache.age", 600));
+		ConversionCache conversionCache = new ConversionCache(cacheSize, Duration.ofSeconds(cacheAge));
 		handler.addExactPath("/convert", new HttpHandler() {
 			@Override
 			public void handleRequest(HttpServerExchange exchange) throws Exception {
@@ -76,7 +92,7 @@ public class Server {
 				String errorMessage = null;
 				Status status;
 				try {
-					result = Sb3ToArduinoC.convertProjectJsonToArduinoC(exchange.getInputStream());
+					result = conversionCache.convertProjectJsonToArduinoC(exchange.getInputStream().readAllBytes());
 					status = Status.SUCCESS;
 				} catch (Exception e) {
 					e.printStackTrace();
@@ -91,79 +107,171 @@ public class Server {
 		});
 	}
 
-	private static void addCompileHandler(PathHandler handler) {
-		handler.addExactPath("/compile", new HttpHandler() {
-			@Override
-			public void handleRequest(HttpServerExchange exchange) throws Exception {
-				if (exchange.isInIoThread()) {
-					exchange.dispatch(this);
-					return;
-				}
-				exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
-				exchange.getResponseHeaders().put(new HttpString("Access-Control-Allow-Origin"), "*");
-				exchange.startBlocking();
+	private static void addCompileHandler(PathHandler handler, CompileQueue compileQueue) {
+		handler.addExactPath("/compile", new QueuedHandler(compileQueue, body -> {
+			String result = null;
+			String artifactId = null;
+			String errorMessage = null;
+			Status status;
+			// the generated code is written directly into the sketch file
+			try (StagedSketch sketch = ArduinoCLI.stageArduinoC()) {
+				Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(new ByteArrayInputStream(body), sketch.getWriter());
+				CompileResult compileResult = ArduinoCLI.compileArduinoCToArtifact(sketch);
+				result = compileResult.getLog();
+				artifactId = compileResult.getArtifactId();
+				status = Status.SUCCESS;
+			} catch (Exception e) {
+				e.printStackTrace();
+				errorMessage = ThrowableUtil.throwableToString(e);
+				status = Status.FAILED;
+			}
+			return new AnswerMessageWrapper(status, errorMessage, result, artifactId);
+		}));
+	}
 
-				String result = null;
-				String errorMessage = null;
-				Status status;
+	private static void addUploadHandler(PathHandler handler, CompileQueue compileQueue) {
+		handler.addExactPath("/upload", new QueuedHandler(compileQueue, body -> {
+			String result = null;
+			String errorMessage = null;
+			Status status = Status.FAILED;
+
+			CompileMessageWrapper compileMessage = null;
+			try {
+				compileMessage = fromJson(new ByteArrayInputStream(body), CompileMessageWrapper.class);
+			} catch (IOException e) {
+				e.printStackTrace();
+				errorMessage = ThrowableUtil.throwableToString(e);
+				status = Status.FAILED;
+			}
+			if (compileMessage != null) {
 				try {
-					result = ArduinoCLI.compileArduinoC(Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(exchange.getInputStream()));
+					result = upload(compileMessage);
 					status = Status.SUCCESS;
 				} catch (Exception e) {
 					e.printStackTrace();
 					errorMessage = ThrowableUtil.throwableToString(e);
 					status = Status.FAILED;
 				}
-
-				exchange.setStatusCode(200);
-				exchange.getResponseSender().send(toJson(new AnswerMessageWrapper(status, errorMessage, result)));
-				exchange.endExchange();
 			}
-		});
+			return new AnswerMessageWrapper(status, errorMessage, result);
+		}));
 	}
 
-	private static void addUploadHandler(PathHandler handler) {
-		handler.addExactPath("/upload", new HttpHandler() {
+	private static void addQueueHandler(PathHandler handler, CompileQueue compileQueue) {
+		handler.addExactPath("/queue", new HttpHandler() {
 			@Override
 			public void handleRequest(HttpServerExchange exchange) throws Exception {
-				if (exchange.isInIoThread()) {
-					exchange.dispatch(this);
-					return;
-				}
 				exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
 				exchange.getResponseHeaders().put(new HttpString("Access-Control-Allow-Origin"), "*");
-				exchange.startBlocking();
 
-				String result = null;
-				String errorMessage = null;
-				Status status = Status.FAILED;
+				String jsonResult = toJson(compileQueue.getPosition(getTicket(exchange)));
+				exchange.setStatusCode(200);
+				exchange.getResponseSender().send(toJson(new AnswerMessageWrapper(Status.SUCCESS, null, jsonResult)));
+			}
+		});
+	}
 
-				CompileMessageWrapper compileMessage = null;
-				try {
-					compileMessage = fromJson(exchange.getInputStream(), CompileMessageWrapper.class);
-				} catch (IOException e) {
-					e.printStackTrace();
-					errorMessage = ThrowableUtil.throwableToString(e);
-					status = Status.FAILED;
-				}
-				if (compileMessage != null) {
-					try {
-						result = ArduinoCLI.uploadArduinoC(
-								Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(compileMessage.getCode()),
-								compileMessage.getSerialPort());
-						status = Status.SUCCESS;
-					} catch (Exception e) {
-						e.printStackTrace();
-						errorMessage = ThrowableUtil.throwableToString(e);
-						status = Status.FAILED;
-					}
-				}
+	/**
+	 * Returns the ticket the client has chosen for its request. It is passed as
+	 * {@code ticket} query parameter and can be used to ask the {@code /queue}
+	 * endpoint for the position of the request in the compile queue.
+	 */
+	private static String getTicket(HttpServerExchange exchange) {
+		Deque<String> ticket = exchange.getQueryParameters().get("ticket");
+		return ticket == null ? null : ticket.peekFirst();
+	}
+
+	/**
+	 * A request that is processed by the compile queue.
+	 */
+	private interface QueuedRequest {
+		/**
+		 * Processes the request.
+		 * 
+		 * @param body the complete body of the request
+		 * @return the answer that is sent to the client
+		 */
+		AnswerMessageWrapper handle(byte[] body);
+	}
+
+	/**
+	 * Reads the request body without blocking a thread and then processes the
+	 * request in the compile queue. If the queue is full, the request is answered
+	 * with "503 Service Unavailable" and {@link Status#BUSY} right away. The
+	 * request is cancelled if the client goes away, see {@link PendingAnswer}.
+	 */
+	private static class QueuedHandler implements HttpHandler {
+		private final CompileQueue compileQueue;
+		private final QueuedRequest request;
+
+		private QueuedHandler(CompileQueue compileQueue, QueuedRequest request) {
+			this.compileQueue = compileQueue;
+			this.request = request;
+		}
 
+		@Override
+		public void handleRequest(HttpServerExchange exchange) throws Exception {
+			exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
+			exchange.getResponseHeaders().put(new HttpString("Access-Control-Allow-Origin"), "*");
+			exchange.getRequestReceiver().receiveFullBytes((receivingExchange, body) -> {
+				// keeps the exchange open until the queued request sends the answer
+				receivingExchange.dispatch(SameThreadExecutor.INSTANCE, () -> submit(receivingExchange, body));
+			});
+		}
+
+		private void submit(HttpServerExchange exchange, byte[] body) {
+			String ticket = getTicket(exchange);
+			PendingAnswer pendingAnswer = new PendingAnswer(exchange);
+			try {
+				Future<?> queuedRequest = compileQueue.submit(ticket, () -> answer(pendingAnswer, body));
 				exchange.setStatusCode(200);
-				exchange.getResponseSender().send(toJson(new AnswerMessageWrapper(status, errorMessage, result)));
-				exchange.endExchange();
+				pendingAnswer.watch(queuedRequest);
+			} catch (RejectedExecutionException e) {
+				QueueMessageWrapper queuePosition = compileQueue.getPosition(ticket);
+				long retryAfterSeconds = Math.max(1, (queuePosition.getEstimatedWaitMillis() + 999) / 1000);
+				exchange.setStatusCode(503);
+				exchange.getResponseHeaders().put(Headers.RETRY_AFTER, retryAfterSeconds);
+				exchange.getResponseSender().send(toJson(new AnswerMessageWrapper(Status.BUSY,
+						"The server is busy, please try again later.", toJson(queuePosition))));
 			}
-		});
+		}
+
+		/**
+		 * Processes the request and sends the answer. Anything the request throws,
+		 * e.g. a StackOverflowError, is answered with {@link Status#FAILED}, the
+		 * client would wait forever otherwise.
+		 */
+		private void answer(PendingAnswer pendingAnswer, byte[] body) {
+			AnswerMessageWrapper answer;
+			try {
+				answer = request.handle(body);
+			} catch (Throwable e) {
+				e.printStackTrace();
+				answer = new AnswerMessageWrapper(Status.FAILED, ThrowableUtil.throwableToString(e), null);
+			}
+			pendingAnswer.complete(toJson(answer));
+		}
+	}
+
+	/**
+	 * Uploads the already compiled program if the message contains an artifact id,
+	 * otherwise the code is converted, compiled and uploaded. If the compiled
+	 * program is no longer available the code is compiled again.
+	 */
+	private static String upload(CompileMessageWrapper compileMessage) throws Exception {
+		if (compileMessage.getArtifactId() != null) {
+			try {
+				return ArduinoCLI.uploadArtifact(compileMessage.getArtifactId(), compileMessage.getSerialPort());
+			} catch (ArtifactNotFoundException e) {
+				if (compileMessage.getCode() == null) {
+					throw e;
+				}
+			}
+		}
+		try (StagedSketch sketch = ArduinoCLI.stageArduinoC()) {
+			Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(compileMessage.getCode(), sketch.getWriter());
+			return ArduinoCLI.uploadArduinoC(sketch, compileMessage.getSerialPort());
+		}
 	}
 
 	private static void addConnectedFtduinoHandler(PathHandler handler) {
@@ -206,9 +314,8 @@ public class Server {
 	 *         when conversion fails!
 	 */
 	private static String toJson(Object object) {
-		ObjectMapper mapper = new ObjectMapper();
 		try {
-			return mapper.writeValueAsString(object);
+			return JsonUtil.writer().writeValueAsString(object);
 		} catch (JsonProcessingException e) {
 			e.printStackTrace();
 			return "Internal error:\n" + ThrowableUtil.throwableToString(e);
@@ -217,7 +324,6 @@ public class Server {
 
 	private static <T> T fromJson(InputStream inputStream, Class<T> class1)
 			throws JsonParseException, JsonMappingException, IOException {
-		ObjectMapper mapper = new ObjectMapper();
-		return (T) mapper.readValue(inputStream, class1);
+		return JsonUtil.readerFor(class1).readValue(inputStream);
 	}
 }
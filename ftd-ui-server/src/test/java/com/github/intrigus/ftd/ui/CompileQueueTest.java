@@ -0,0 +1,93 @@
+package com.github.intrigus.ftd.ui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class CompileQueueTest {
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@AfterEach
+	public void releaseWorkers() {
+		release.countDown();
+	}
+
+	/**
+	 * Submits a request that keeps its worker busy until the test ends and waits
+	 * until it is running.
+	 */
+	private void occupyWorker(CompileQueue queue) throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		queue.submit("running", () -> {
+			started.countDown();
+			awaitRelease();
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+	}
+
+	private void awaitRelease() {
+		try {
+			release.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void testFullQueueRejectsRequests() throws InterruptedException {
+		CompileQueue queue = new CompileQueue(1, 2);
+		occupyWorker(queue);
+		queue.submit("a", this::awaitRelease);
+		queue.submit("b", this::awaitRelease);
+		assertThrows(RejectedExecutionException.class, () -> queue.submit("c", this::awaitRelease));
+	}
+
+	@Test
+	public void testPositionOfTicket() throws InterruptedException {
+		CompileQueue queue = new CompileQueue(1, 4);
+		occupyWorker(queue);
+		queue.submit("a", this::awaitRelease);
+		queue.submit("b", this::awaitRelease);
+		assertEquals(0, queue.getPosition("a").getPosition());
+		assertEquals(1, queue.getPosition("b").getPosition());
+		assertEquals(2, queue.getPosition("b").getQueueLength());
+		// the running request is not waiting anymore
+		assertEquals(-1, queue.getPosition("running").getPosition());
+		assertEquals(-1, queue.getPosition("unknown").getPosition());
+		assertEquals(-1, queue.getPosition(null).getPosition());
+	}
+
+	@Test
+	public void testCancelRemovesWaitingRequest() throws InterruptedException {
+		CompileQueue queue = new CompileQueue(1, 2);
+		occupyWorker(queue);
+		Future<?> first = queue.submit("a", this::awaitRelease);
+		queue.submit("b", this::awaitRelease);
+		first.cancel(true);
+		assertEquals(1, queue.getPosition(null).getQueueLength());
+		assertEquals(0, queue.getPosition("b").getPosition());
+		// the place in the queue can be used right away
+		queue.submit("c", this::awaitRelease);
+		assertEquals(1, queue.getPosition("c").getPosition());
+	}
+
+	@Test
+	public void testWaitEstimate() throws InterruptedException {
+		CompileQueue queue = new CompileQueue(1, 4);
+		assertEquals(0, queue.getPosition(null).getEstimatedWaitMillis());
+		occupyWorker(queue);
+		// the running request is expected to be half done
+		assertEquals(5_000, queue.getPosition(null).getEstimatedWaitMillis());
+		queue.submit("a", this::awaitRelease);
+		assertEquals(5_000, queue.getPosition("a").getEstimatedWaitMillis());
+		assertEquals(15_000, queue.getPosition(null).getEstimatedWaitMillis());
+	}
+}
@@ -10,9 +10,16 @@
 
 __attribute__ ((const)) bool otherToBoolean(ScratchValue value) {
   if (value.type == Type::ScratchNumber) {
-    if (isnan(value.number) || value.number == 0 || value.number == -0) {
-      return false;
-    }
+    return toBoolean(value.number);
+  }
+  return true;
+}
+
+// The value of a number as boolean.
+// The generated code uses it for numbers that are not stored in a ScratchValue.
+bool toBoolean (float number) {
+  if (isnan(number) || number == 0 || number == -0) {
+    return false;
   }
   return true;
 }
@@ -40,12 +47,7 @@ float toNumber (ScratchValue value) {
   // If value is already a number we don't need to coerce it with
   // Number().
   if (value.type == Type::ScratchNumber) {
-    // Scratch treats NaN as 0, when needed as a number.
-    // E.g., 0 + NaN -> 0.
-    if (isnan(value.number)) {
-      return 0;
-    }
-    return value.number;
+    return toNumber(value.number);
   }
   // TODO FIX
   float n = strtod(value.string, NULL);
@@ -57,6 +59,17 @@ float toNumber (ScratchValue value) {
   return n;
 }
 
+// The value of a number when needed as a number.
+// The generated code uses it for numbers that are not stored in a ScratchValue.
+float toNumber (float number) {
+  // Scratch treats NaN as 0, when needed as a number.
+  // E.g., 0 + NaN -> 0.
+  if (isnan(number)) {
+    return 0;
+  }
+  return number;
+}
+
 __attribute__ ((const)) bool is_empty(const char *s) {
   while (*s != '\0') {
     if (!isspace((unsigned char)*s))
@@ -130,6 +143,12 @@ float compare (ScratchValue v1, ScratchValue v2) {
     if (free1) free(s1);
     return result;
   }
+  return compareNumbers(n1, n2);
+}
+
+// Compares two numbers that have already been converted with toNumber.
+// The generated code uses it if both values are known to be compared as numbers.
+float compareNumbers (float n1, float n2) {
   // Handle the special case of Infinity
   if (
     (n1 == INFINITY && n2 == INFINITY) ||
@@ -140,3 +159,16 @@ float compare (ScratchValue v1, ScratchValue v2) {
   // Compare as numbers.
   return n1 - n2;
 }
+
+// The number of times a repeat block runs its blocks.
+// Scratch rounds the number once, when the repeat block starts.
+uint32_t toRepeatCount (float number) {
+  number = roundf(toNumber(number));
+  if (!(number > 0)) {
+    return 0;
+  }
+  if (number >= 4294967296.0f) {
+    return UINT32_MAX;
+  }
+  return (uint32_t) number;
+}
@@ -5,10 +5,18 @@
 
 float toNumber (ScratchValue);
 
+float toNumber (float) __attribute__ ((const));
+
 bool toBoolean (ScratchValue) __attribute__ ((const));
 
+bool toBoolean (float) __attribute__ ((const));
+
 float compare (ScratchValue, ScratchValue);
 
+float compareNumbers (float, float) __attribute__ ((const));
+
+uint32_t toRepeatCount (float) __attribute__ ((const));
+
 int isWhiteSpace (ScratchValue) __attribute__ ((const));
 
 const char* toString(ScratchValue, bool*);
@@ -275,21 +275,38 @@ InputMode toInputMode(ScratchValue inputMode) {
   }
 }
 
+// The functions that take a ScratchValue parse the specifiers at run time.
+// The generated code calls the functions that take the enumerators directly,
+// if the specifiers are known when the program is converted.
+
 ScratchValue scratch_ftduino_input_analog(ScratchValue scratchInputSpecifier, ScratchValue scratchInputMode) {
-  AnalogInputSpecifier inputSpecifier = toAnalogInputSpecifier(scratchInputSpecifier);
-  InputMode inputMode = toInputMode(scratchInputMode);
+  return scratch_ftduino_input_analog(toAnalogInputSpecifier(scratchInputSpecifier), toInputMode(scratchInputMode));
+}
+
+ScratchValue scratch_ftduino_input_analog(AnalogInputSpecifier inputSpecifier, InputMode inputMode) {
+  return scratchNumber(scratch_ftduino_input_analog_value(inputSpecifier, inputMode));
+}
+
+uint16_t scratch_ftduino_input_analog_value(ScratchValue scratchInputSpecifier, ScratchValue scratchInputMode) {
+  return scratch_ftduino_input_analog_value(toAnalogInputSpecifier(scratchInputSpecifier), toInputMode(scratchInputMode));
+}
+
+uint16_t scratch_ftduino_input_analog_value(AnalogInputSpecifier inputSpecifier, InputMode inputMode) {
   if (inputSpecifier != AnalogInputSpecifier::INVALID_SPECIFIER && inputMode != InputMode::INVALID_MODE) {
     uint8_t ftduinoInputSpecifier = toFtduinoSpecifier(inputSpecifier);
     uint8_t ftduinoInputMode = toFtduinoInputMode(inputMode);
     ftduino.input_set_mode(ftduinoInputSpecifier, ftduinoInputMode);
-    return scratchNumber(ftduino.input_get(ftduinoInputSpecifier));
+    return ftduino.input_get(ftduinoInputSpecifier);
   } else {
-    return scratchNumber(0);
+    return 0;
   }
 }
 
 ScratchValue scratch_ftduino_input(ScratchValue scratchInputSpecifier) {
-  DigitalInputSpecifier inputSpecifier = toDigitalInputSpecifier(scratchInputSpecifier);
+  return scratch_ftduino_input(toDigitalInputSpecifier(scratchInputSpecifier));
+}
+
+ScratchValue scratch_ftduino_input(DigitalInputSpecifier inputSpecifier) {
   if (inputSpecifier != DigitalInputSpecifier::INVALID_SPECIFIER) {
     uint8_t ftduinoInputSpecifier = toFtduinoSpecifier(inputSpecifier);
     if (inputSpecifier >= DigitalInputSpecifier::I1 && inputSpecifier <= DigitalInputSpecifier::I8) {
@@ -308,7 +325,10 @@ ScratchValue scratch_ftduino_input(ScratchValue scratchInputSpecifier) {
 }
 
 void scratch_ftduino_clear_counter(ScratchValue scratchCounterSpecifier) {
-  CounterSpecifier counterSpecifier = toCounterSpecifier(scratchCounterSpecifier);
+  scratch_ftduino_clear_counter(toCounterSpecifier(scratchCounterSpecifier));
+}
+
+void scratch_ftduino_clear_counter(CounterSpecifier counterSpecifier) {
   if (counterSpecifier != CounterSpecifier::INVALID_SPECIFIER) {
     uint8_t ftduinoCounterSpecifier = toFtduinoSpecifier(counterSpecifier);
     ftduino.counter_clear(ftduinoCounterSpecifier);
@@ -316,15 +336,21 @@ void scratch_ftduino_clear_counter(ScratchValue scratchCounterSpecifier) {
 }
 
 void scratch_ftduino_output(ScratchValue scratchOutputSpecifier, ScratchValue value) {
-  OutputSpecifier outputSpecifier = toOutputSpecifier(scratchOutputSpecifier);
+  scratch_ftduino_output(toOutputSpecifier(scratchOutputSpecifier), toBoolean(value));
+}
+
+void scratch_ftduino_output(OutputSpecifier outputSpecifier, bool value) {
   if (outputSpecifier != OutputSpecifier::INVALID_SPECIFIER) {
     uint8_t ftduinoOutputSpecifier = toFtduinoSpecifier(outputSpecifier);
-    ftduino.output_set(ftduinoOutputSpecifier, Ftduino::HI, toBoolean(value));
+    ftduino.output_set(ftduinoOutputSpecifier, Ftduino::HI, value);
   }
 }
 
 void scratch_ftduino_output_analog(ScratchValue scratchOutputSpecifier, ScratchValue value) {
-  OutputSpecifier outputSpecifier = toOutputSpecifier(scratchOutputSpecifier);
+  scratch_ftduino_output_analog(toOutputSpecifier(scratchOutputSpecifier), value);
+}
+
+void scratch_ftduino_output_analog(OutputSpecifier outputSpecifier, ScratchValue value) {
   if (outputSpecifier != OutputSpecifier::INVALID_SPECIFIER) {
     uint8_t ftduinoOutputSpecifier = toFtduinoSpecifier(outputSpecifier);
     ftduino.output_set(          ftduinoOutputSpecifier, Ftduino::HI, toNumber(value));
@@ -332,8 +358,10 @@ void scratch_ftduino_output_analog(ScratchValue scratchOutputSpecifier, ScratchV
 }
 
 void scratch_ftduino_motor(ScratchValue scratchMotorSpecifier, ScratchValue scratchDir, ScratchValue value) {
-  MotorSpecifier motorSpecifier = toMotorSpecifier(scratchMotorSpecifier);
-  MotorDir dir = toMotorDir(scratchDir);
+  scratch_ftduino_motor(toMotorSpecifier(scratchMotorSpecifier), toMotorDir(scratchDir), value);
+}
+
+void scratch_ftduino_motor(MotorSpecifier motorSpecifier, MotorDir dir, ScratchValue value) {
   if (motorSpecifier != MotorSpecifier::INVALID_SPECIFIER && dir != MotorDir::INVALID_DIRECTION) {
     uint8_t ftduinoMotorSpecifier = toFtduinoSpecifier(motorSpecifier);
     uint8_t ftduinoMotorDir = toFtduinoSpecifier(dir);
@@ -343,8 +371,10 @@ void scratch_ftduino_motor(ScratchValue scratchMotorSpecifier, ScratchValue scra
 
 
 void scratch_ftduino_motor_stop(ScratchValue scratchMotorSpecifier, ScratchValue scratchStopMode) {
-  MotorSpecifier motorSpecifier = toMotorSpecifier(scratchMotorSpecifier);
-  MotorStopMode stopMode = toMotorStopMode(scratchStopMode);
+  scratch_ftduino_motor_stop(toMotorSpecifier(scratchMotorSpecifier), toMotorStopMode(scratchStopMode));
+}
+
+void scratch_ftduino_motor_stop(MotorSpecifier motorSpecifier, MotorStopMode stopMode) {
   if (motorSpecifier != MotorSpecifier::INVALID_SPECIFIER && stopMode != MotorStopMode::INVALID_MODE) {
     uint8_t ftduinoMotorSpecifier = toFtduinoSpecifier(motorSpecifier);
     uint8_t ftduinoMotorStopMode = toFtduinoSpecifier(stopMode);
@@ -359,11 +389,22 @@ void scratch_ftduino_motor_stop(ScratchValue scratchMotorSpecifier, ScratchValue
 }
 
 ScratchValue scratch_ftduino_input_counter(ScratchValue scratchCounterSpecifier) {
-  CounterSpecifier counterSpecifier = toCounterSpecifier(scratchCounterSpecifier);
+  return scratch_ftduino_input_counter(toCounterSpecifier(scratchCounterSpecifier));
+}
+
+ScratchValue scratch_ftduino_input_counter(CounterSpecifier counterSpecifier) {
+  return scratchNumber(scratch_ftduino_input_counter_value(counterSpecifier));
+}
+
+uint16_t scratch_ftduino_input_counter_value(ScratchValue scratchCounterSpecifier) {
+  return scratch_ftduino_input_counter_value(toCounterSpecifier(scratchCounterSpecifier));
+}
+
+uint16_t scratch_ftduino_input_counter_value(CounterSpecifier counterSpecifier) {
   if (counterSpecifier != CounterSpecifier::INVALID_SPECIFIER) {
     uint8_t ftduinoCounterSpecifier = toFtduinoSpecifier(counterSpecifier);
-    return scratchNumber(ftduino.counter_get(ftduinoCounterSpecifier));
+    return ftduino.counter_get(ftduinoCounterSpecifier);
   } else {
-    return scratchNumber(0);
+    return 0;
   }
 }
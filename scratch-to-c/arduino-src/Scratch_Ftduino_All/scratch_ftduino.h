@@ -22,18 +22,42 @@ enum class InputMode : int8_t {INVALID_MODE, VOLTAGE, RESISTANCE, SWITCH};
 
 ScratchValue scratch_ftduino_input_analog(ScratchValue, ScratchValue);
 
+ScratchValue scratch_ftduino_input_analog(AnalogInputSpecifier, InputMode);
+
+uint16_t scratch_ftduino_input_analog_value(ScratchValue, ScratchValue);
+
+uint16_t scratch_ftduino_input_analog_value(AnalogInputSpecifier, InputMode);
+
 ScratchValue scratch_ftduino_input(ScratchValue);
 
+ScratchValue scratch_ftduino_input(DigitalInputSpecifier);
+
 void scratch_ftduino_clear_counter(ScratchValue);
 
+void scratch_ftduino_clear_counter(CounterSpecifier);
+
 void scratch_ftduino_output(ScratchValue, ScratchValue);
 
+void scratch_ftduino_output(OutputSpecifier, bool);
+
 void scratch_ftduino_output_analog(ScratchValue, ScratchValue);
 
+void scratch_ftduino_output_analog(OutputSpecifier, ScratchValue);
+
 void scratch_ftduino_motor(ScratchValue, ScratchValue, ScratchValue);
 
+void scratch_ftduino_motor(MotorSpecifier, MotorDir, ScratchValue);
+
 void scratch_ftduino_motor_stop(ScratchValue, ScratchValue);
 
+void scratch_ftduino_motor_stop(MotorSpecifier, MotorStopMode);
+
 ScratchValue scratch_ftduino_input_counter(ScratchValue);
 
+ScratchValue scratch_ftduino_input_counter(CounterSpecifier);
+
+uint16_t scratch_ftduino_input_counter_value(ScratchValue);
+
+uint16_t scratch_ftduino_input_counter_value(CounterSpecifier);
+
 #endif /* SCRATCH_FTDUINO_H */
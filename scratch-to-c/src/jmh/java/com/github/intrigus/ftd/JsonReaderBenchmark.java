@@ -0,0 +1,95 @@
+package com.github.intrigus.ftd;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.intrigus.ftd.exception.ScratchParseException;
+import com.github.intrigus.ftd.util.JsonUtil;
+
+/**
+ * Compares reading a scratch target with a new {@link ObjectMapper}, as it was
+ * done for every conversion, to reading it with the shared reader of
+ * {@link JsonUtil}. The full conversion is measured as well to put the numbers
+ * into perspective, both with and without the {@link ScriptCodeCache}.
+ * <p>
+ * Run with {@code ./gradlew :scratch-to-c:jmh}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonReaderBenchmark {
+
+	/**
+	 * The number of blocks below the hat block. A typical classroom program has a
+	 * few dozen blocks.
+	 */
+	@Param({ "20", "500" })
+	public int blockCount;
+
+	private byte[] targetJson;
+
+	@Setup
+	public void createTargetJson() {
+		StringBuilder blocks = new StringBuilder();
+		blocks.append("\"hat\": {\"opcode\": \"event_whenflagclicked\", \"next\": \"led0\", \"parent\": null, "
+				+ "\"inputs\": {}, \"fields\": {}, \"shadow\": false, \"topLevel\": true, \"x\": 0, \"y\": 0}");
+		for (int i = 0; i < blockCount; i++) {
+			String next = i + 1 < blockCount ? "\"led" + (i + 1) + "\"" : "null";
+			String parent = i > 0 ? "\"led" + (i - 1) + "\"" : "\"hat\"";
+			blocks.append(", \"led" + i + "\": {\"opcode\": \"ftduino_led\", \"next\": " + next + ", \"parent\": "
+					+ parent + ", \"inputs\": {}, \"fields\": {\"VALUE\": [\"" + (i % 2) + "\", null]}, "
+					+ "\"shadow\": false, \"topLevel\": false}");
+		}
+		targetJson = ("{\"blocks\": {" + blocks + "}}").getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public ScratchTarget readWithNewMapper() throws IOException {
+		return new ObjectMapper().readValue(targetJson, ScratchTarget.class);
+	}
+
+	@Benchmark
+	public ScratchTarget readWithSharedReader() throws IOException {
+		return JsonUtil.readerFor(ScratchTarget.class).readValue(targetJson);
+	}
+
+	/**
+	 * Converts the target without the {@link ScriptCodeCache}. The blocks bound by
+	 * the shared reader have no hashes, so their code is generated every time.
+	 */
+	@Benchmark
+	public String convert() throws IOException, ScratchParseException {
+		ScratchBlocks blocks = JsonUtil.readerFor(ScratchTarget.class).<ScratchTarget>readValue(targetJson)
+				.getBlocks();
+		blocks.init();
+		return blocks.generateCCode();
+	}
+
+	/**
+	 * Converts the target like the converter does. Every iteration after the
+	 * first takes the code from the {@link ScriptCodeCache}.
+	 */
+	@Benchmark
+	public String convertCached() throws IOException, ScratchParseException {
+		return Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(new ByteArrayInputStream(targetJson));
+	}
+}
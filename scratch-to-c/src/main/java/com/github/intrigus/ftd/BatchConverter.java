@@ -0,0 +1,246 @@
+package com.github.intrigus.ftd;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts many sb3 files in a single JVM, so that the JVM startup and the
+ * warm-up of the converter are only paid once. The files are converted in
+ * parallel on a work-stealing pool. The Arduino C++ program of every file is
+ * written next to it, i.e. {@code foo.sb3} is converted to {@code foo.ino}.
+ * <p>
+ * The inputs can be sb3 files, directories, which are searched recursively for
+ * sb3 files, or glob patterns like {@code projects/*}{@code /*.sb3}.
+ * </p>
+ */
+class BatchConverter {
+	private static final String SB3_EXTENSION = ".sb3";
+	private static final String GLOB_CHARACTERS = "*?[{";
+
+	private final int threads;
+	private final PrintStream report;
+
+	/**
+	 * The outcome of converting a single file.
+	 */
+	static class Result {
+		private final Path file;
+		private final ExitCode exitCode;
+		private final String errorMessage;
+		private final long durationMillis;
+
+		private Result(Path file, ExitCode exitCode, String errorMessage, long durationMillis) {
+			this.file = file;
+			this.exitCode = exitCode;
+			this.errorMessage = errorMessage;
+			this.durationMillis = durationMillis;
+		}
+
+		Path getFile() {
+			return file;
+		}
+
+		ExitCode getExitCode() {
+			return exitCode;
+		}
+	}
+
+	/**
+	 * Creates a new batch converter.
+	 *
+	 * @param threads the number of files that are converted at the same time
+	 * @param report  receives a line for every converted file and a summary
+	 */
+	BatchConverter(int threads, PrintStream report) {
+		this.threads = threads;
+		this.report = report;
+	}
+
+	/**
+	 * Converts all sb3 files the inputs refer to and reports the results.
+	 *
+	 * @param inputs sb3 files, directories or glob patterns
+	 * @return the exit code: {@link ExitCode#SUCCESS} if every file has been
+	 *         converted, the category of the failures if all failed files share
+	 *         one and {@link ExitCode#UNKNOWN_ERROR} otherwise
+	 * @throws IOException if the inputs could not be searched for sb3 files
+	 */
+	ExitCode convert(List<String> inputs) throws IOException {
+		long start = System.nanoTime();
+		List<Path> files = findSb3Files(inputs);
+		List<Result> results = convertFiles(files);
+		Map<ExitCode, Integer> failures = new EnumMap<>(ExitCode.class);
+		for (Result result : results) {
+			if (result.exitCode != ExitCode.SUCCESS) {
+				failures.merge(result.exitCode, 1, Integer::sum);
+			}
+		}
+		report.println(String.format(Locale.ROOT, "Converted %d of %d files in %d ms",
+				results.size() - failures.values().stream().mapToInt(Integer::intValue).sum(), results.size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+		failures.forEach((exitCode, count) -> report.println(String.format(Locale.ROOT, "%d %s: %d failed",
+				exitCode.getCode(), exitCode.getDescription(), count)));
+		if (failures.isEmpty()) {
+			return ExitCode.SUCCESS;
+		}
+		return failures.size() == 1 ? failures.keySet().iterator().next() : ExitCode.UNKNOWN_ERROR;
+	}
+
+	/**
+	 * Converts the files in parallel. The results are reported in the order of the
+	 * files.
+	 */
+	List<Result> convertFiles(List<Path> files) {
+		ExecutorService pool = Executors.newWorkStealingPool(threads);
+		try {
+			List<Future<Result>> pendingResults = new ArrayList<>();
+			for (Path file : files) {
+				pendingResults.add(pool.submit(() -> convertFile(file)));
+			}
+			List<Result> results = new ArrayList<>();
+			for (Future<Result> pendingResult : pendingResults) {
+				Result result = getResult(pendingResult);
+				report(result);
+				results.add(result);
+			}
+			return results;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static Result getResult(Future<Result> pendingResult) {
+		try {
+			return pendingResult.get();
+		} catch (ExecutionException e) {
+			// convertFile catches everything
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void report(Result result) {
+		if (result.exitCode == ExitCode.SUCCESS) {
+			report.println(String.format(Locale.ROOT, "OK     %6d ms  %s", result.durationMillis, result.file));
+		} else {
+			report.println(String.format(Locale.ROOT, "FAILED %6d ms  %s: %d %s: %s", result.durationMillis,
+					result.file, result.exitCode.getCode(), result.exitCode.getDescription(), result.errorMessage));
+		}
+	}
+
+	private static Result convertFile(Path file) {
+		long start = System.nanoTime();
+		Path inoFile = toInoFile(file);
+		try {
+			try (Writer out = Files.newBufferedWriter(inoFile, StandardCharsets.UTF_8)) {
+				Sb3ToArduinoC.convertSb3FileToArduinoC(file, out);
+				out.write(System.lineSeparator());
+			}
+			return new Result(file, ExitCode.SUCCESS, null, elapsedMillis(start));
+		} catch (Throwable e) {
+			// also errors like a StackOverflowError of a deeply nested project must only
+			// fail this file and not the whole batch
+			try {
+				Files.deleteIfExists(inoFile);
+			} catch (IOException deleteFailure) {
+				e.addSuppressed(deleteFailure);
+			}
+			String errorMessage = e.getMessage() != null ? e.getMessage() : e.toString();
+			return new Result(file, ExitCode.of(e), errorMessage, elapsedMillis(start));
+		}
+	}
+
+	private static long elapsedMillis(long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Returns the file the Arduino C++ program of the given sb3 file is written
+	 * to.
+	 */
+	static Path toInoFile(Path sb3File) {
+		String name = sb3File.getFileName().toString();
+		if (name.toLowerCase(Locale.ROOT).endsWith(SB3_EXTENSION)) {
+			name = name.substring(0, name.length() - SB3_EXTENSION.length());
+		}
+		return sb3File.resolveSibling(name + ".ino");
+	}
+
+	/**
+	 * Expands the inputs to a list of sb3 files. Every file is only contained once.
+	 */
+	static List<Path> findSb3Files(List<String> inputs) throws IOException {
+		Set<Path> files = new LinkedHashSet<>();
+		for (String input : inputs) {
+			if (isGlob(input)) {
+				files.addAll(findMatchingFiles(input));
+			} else {
+				Path path = Paths.get(input);
+				if (Files.isDirectory(path)) {
+					try (Stream<Path> walk = Files.walk(path)) {
+						files.addAll(walk.filter(BatchConverter::isSb3File).sorted().collect(Collectors.toList()));
+					}
+				} else {
+					// a missing file is reported as failed conversion
+					files.add(path);
+				}
+			}
+		}
+		return new ArrayList<>(files);
+	}
+
+	private static boolean isGlob(String input) {
+		return input.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) != -1);
+	}
+
+	private static boolean isSb3File(Path path) {
+		return Files.isRegularFile(path)
+				&& path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(SB3_EXTENSION);
+	}
+
+	/**
+	 * Returns the files that match the glob pattern. Only the folder in front of
+	 * the first glob character is searched.
+	 */
+	private static List<Path> findMatchingFiles(String glob) throws IOException {
+		String pattern = glob.replace('\\', '/');
+		int firstGlobCharacter = 0;
+		while (GLOB_CHARACTERS.indexOf(pattern.charAt(firstGlobCharacter)) == -1) {
+			firstGlobCharacter++;
+		}
+		int baseDirEnd = pattern.lastIndexOf('/', firstGlobCharacter);
+		Path baseDir = Paths.get(baseDirEnd == -1 ? "." : pattern.substring(0, baseDirEnd + 1));
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern.substring(baseDirEnd + 1));
+		if (!Files.isDirectory(baseDir)) {
+			return new ArrayList<>();
+		}
+		try (Stream<Path> walk = Files.walk(baseDir)) {
+			return walk.filter(path -> Files.isRegularFile(path) && matcher.matches(baseDir.relativize(path)))
+					.sorted().map(path -> baseDirEnd == -1 ? baseDir.relativize(path) : path)
+					.collect(Collectors.toList());
+		}
+	}
+}
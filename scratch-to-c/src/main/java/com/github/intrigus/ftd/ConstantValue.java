@@ -0,0 +1,378 @@
+package com.github.intrigus.ftd;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+import com.github.intrigus.ftd.block.IntegerRange;
+import com.github.intrigus.ftd.block.ScratchBlock.ExpressionType;
+
+/**
+ * A value that is already known when the program is converted, e.g. a number
+ * typed into an input or the result of an operator whose inputs are all known.
+ * It mirrors the ScratchValue of the runtime and the operators of cast.cpp and
+ * operators.cpp, so that operators can be evaluated at conversion time with
+ * exactly the result they would have on the ftDuino. The runtime computes with
+ * single precision floats, just like Java's float.
+ * <p>
+ * Some conversions of the runtime can't be reproduced exactly, e.g. parsing an
+ * arbitrary string with strtod, formatting a number with dtostrf or converting
+ * a boolean to a number, which reads the boolean as a string. Results that are
+ * not finite or are subnormal are not reproduced either, the avr floating point
+ * library treats them differently. The operations return {@code null} in all
+ * these cases and the operator is evaluated at run time.
+ * </p>
+ */
+public final class ConstantValue {
+	/**
+	 * The value of {@link ScratchConstants#SCRATCH_ZERO}.
+	 */
+	public static final ConstantValue ZERO = new ConstantValue(Type.NUMBER, 0f, null, false);
+	/**
+	 * The value of {@link ScratchConstants#SCRATCH_FALSE}.
+	 */
+	public static final ConstantValue FALSE = new ConstantValue(Type.BOOLEAN, 0f, null, false);
+
+	// the numbers that strtod parses completely, after leading white space
+	private static final Pattern DECIMAL_NUMBER = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+	// the characters that strtod could parse as the beginning of a number
+	private static final String NUMBER_START_CHARACTERS = "+-.0123456789iInN";
+
+	private enum Type {
+		NUMBER, STRING, BOOLEAN
+	}
+
+	private final Type type;
+	private final float number;
+	private final String string;
+	private final boolean booleanValue;
+
+	private ConstantValue(Type type, float number, String string, boolean booleanValue) {
+		this.type = type;
+		this.number = number;
+		this.string = string;
+		this.booleanValue = booleanValue;
+	}
+
+	/**
+	 * Creates a number value.
+	 *
+	 * @param number the number
+	 * @return the value or {@code null} if the number is not finite or subnormal
+	 */
+	public static ConstantValue number(float number) {
+		if (!isReproducible(number)) {
+			return null;
+		}
+		return new ConstantValue(Type.NUMBER, number, null, false);
+	}
+
+	/**
+	 * Creates a string value.
+	 *
+	 * @param string the string
+	 * @return the value or {@code null} if the string can't be generated as is in
+	 *         a C string literal
+	 */
+	public static ConstantValue string(String string) {
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c == '"' || c == '\\' || c < ' ') {
+				return null;
+			}
+		}
+		return new ConstantValue(Type.STRING, 0f, string, false);
+	}
+
+	/**
+	 * Creates a boolean value.
+	 *
+	 * @param booleanValue the boolean
+	 * @return the value
+	 */
+	public static ConstantValue bool(boolean booleanValue) {
+		return new ConstantValue(Type.BOOLEAN, 0f, null, booleanValue);
+	}
+
+	private static boolean isReproducible(float number) {
+		return Float.isFinite(number) && (number == 0 || Math.abs(number) >= Float.MIN_NORMAL);
+	}
+
+	/**
+	 * Mirrors toNumber of cast.cpp.
+	 *
+	 * @return the number or {@code null} if it is unknown
+	 */
+	Float toNumber() {
+		switch (type) {
+		case NUMBER:
+			return number;
+		case STRING:
+			return parseNumber(string);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Mirrors the parsing of a string with strtod. Only decimal numbers and
+	 * strings that strtod can't parse at all are supported.
+	 */
+	private static Float parseNumber(String string) {
+		int start = 0;
+		while (start < string.length() && isSpace(string.charAt(start))) {
+			start++;
+		}
+		String trimmed = string.substring(start);
+		if (trimmed.isEmpty() || NUMBER_START_CHARACTERS.indexOf(trimmed.charAt(0)) < 0) {
+			return 0f;
+		}
+		if (!DECIMAL_NUMBER.matcher(trimmed).matches()) {
+			return null;
+		}
+		float number = Float.parseFloat(trimmed);
+		return isReproducible(number) ? number : null;
+	}
+
+	private static boolean isSpace(char c) {
+		return c == ' ' || (c >= '\t' && c <= '\r');
+	}
+
+	/**
+	 * Mirrors toBoolean of cast.cpp.
+	 */
+	private boolean toBoolean() {
+		switch (type) {
+		case BOOLEAN:
+			return booleanValue;
+		case STRING:
+			return !(string.isEmpty() || string.equals("0") || compareIgnoreCase(string, "false") == 0);
+		default:
+			return number != 0;
+		}
+	}
+
+	/**
+	 * Mirrors isWhiteSpace of cast.cpp, which is true for strings that are not
+	 * blank.
+	 */
+	private boolean isWhiteSpace() {
+		return type == Type.STRING && !string.chars().allMatch(c -> isSpace((char) c));
+	}
+
+	/**
+	 * Mirrors compare of cast.cpp.
+	 *
+	 * @return the sign of the result or {@code null} if it is unknown
+	 */
+	private static Integer compare(ConstantValue v1, ConstantValue v2) {
+		Float n1 = v1.toNumber();
+		Float n2 = v2.toNumber();
+		if (n1 == null || n2 == null) {
+			return null;
+		}
+		if ((n1 == 0 && v1.isWhiteSpace()) || (n2 == 0 && v2.isWhiteSpace())) {
+			// only strings are compared as they are, numbers are formatted with dtostrf
+			if (v1.type != Type.STRING || v2.type != Type.STRING) {
+				return null;
+			}
+			return Integer.signum(compareIgnoreCase(v1.string, v2.string));
+		}
+		if (n1.floatValue() == n2.floatValue()) {
+			return 0;
+		}
+		float difference = n1 - n2;
+		if (difference != 0 && Math.abs(difference) < Float.MIN_NORMAL) {
+			return null;
+		}
+		return (int) Math.signum(difference);
+	}
+
+	/**
+	 * Mirrors strcasecmp, which compares the bytes of the strings and only
+	 * converts ASCII letters to lower case.
+	 */
+	private static int compareIgnoreCase(String s1, String s2) {
+		byte[] bytes1 = s1.getBytes(StandardCharsets.UTF_8);
+		byte[] bytes2 = s2.getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < Math.min(bytes1.length, bytes2.length); i++) {
+			int difference = toLowerCase(bytes1[i] & 0xFF) - toLowerCase(bytes2[i] & 0xFF);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return bytes1.length - bytes2.length;
+	}
+
+	private static int toLowerCase(int c) {
+		return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+	}
+
+	/**
+	 * Mirrors s_add of operators.cpp.
+	 */
+	public static ConstantValue add(ConstantValue num1, ConstantValue num2) {
+		Float n1 = num1 != null ? num1.toNumber() : null;
+		Float n2 = num2 != null ? num2.toNumber() : null;
+		return n1 != null && n2 != null ? number(n1 + n2) : null;
+	}
+
+	/**
+	 * Mirrors s_subtract of operators.cpp.
+	 */
+	public static ConstantValue subtract(ConstantValue num1, ConstantValue num2) {
+		Float n1 = num1 != null ? num1.toNumber() : null;
+		Float n2 = num2 != null ? num2.toNumber() : null;
+		return n1 != null && n2 != null ? number(n1 - n2) : null;
+	}
+
+	/**
+	 * Mirrors s_multiply of operators.cpp.
+	 */
+	public static ConstantValue multiply(ConstantValue num1, ConstantValue num2) {
+		Float n1 = num1 != null ? num1.toNumber() : null;
+		Float n2 = num2 != null ? num2.toNumber() : null;
+		return n1 != null && n2 != null ? number(n1 * n2) : null;
+	}
+
+	/**
+	 * Mirrors s_divide of operators.cpp.
+	 */
+	public static ConstantValue divide(ConstantValue num1, ConstantValue num2) {
+		Float n1 = num1 != null ? num1.toNumber() : null;
+		Float n2 = num2 != null ? num2.toNumber() : null;
+		return n1 != null && n2 != null ? number(n1 / n2) : null;
+	}
+
+	/**
+	 * Mirrors s_lt of operators.cpp.
+	 */
+	public static ConstantValue lt(ConstantValue op1, ConstantValue op2) {
+		Integer result = op1 != null && op2 != null ? compare(op1, op2) : null;
+		return result != null ? bool(result < 0) : null;
+	}
+
+	/**
+	 * Mirrors s_equals of operators.cpp.
+	 */
+	public static ConstantValue equalTo(ConstantValue op1, ConstantValue op2) {
+		Integer result = op1 != null && op2 != null ? compare(op1, op2) : null;
+		return result != null ? bool(result == 0) : null;
+	}
+
+	/**
+	 * Mirrors s_gt of operators.cpp.
+	 */
+	public static ConstantValue gt(ConstantValue op1, ConstantValue op2) {
+		Integer result = op1 != null && op2 != null ? compare(op1, op2) : null;
+		return result != null ? bool(result > 0) : null;
+	}
+
+	/**
+	 * Mirrors s_and of operators.cpp.
+	 */
+	public static ConstantValue and(ConstantValue op1, ConstantValue op2) {
+		return op1 != null && op2 != null ? bool(op1.toBoolean() && op2.toBoolean()) : null;
+	}
+
+	/**
+	 * Mirrors s_or of operators.cpp.
+	 */
+	public static ConstantValue or(ConstantValue op1, ConstantValue op2) {
+		return op1 != null && op2 != null ? bool(op1.toBoolean() || op2.toBoolean()) : null;
+	}
+
+	/**
+	 * Mirrors s_not of operators.cpp.
+	 */
+	public static ConstantValue not(ConstantValue op) {
+		return op != null ? bool(!op.toBoolean()) : null;
+	}
+
+	/**
+	 * Returns the type of this value.
+	 *
+	 * @return the type of this value
+	 */
+	public ExpressionType getExpressionType() {
+		switch (type) {
+		case NUMBER:
+			return ExpressionType.NUMBER;
+		case STRING:
+			return ExpressionType.STRING;
+		default:
+			return ExpressionType.BOOLEAN;
+		}
+	}
+
+	/**
+	 * Whether compare of cast.cpp compares this value as number, no matter what
+	 * the other operand is. Strings that are not numbers and "0" are compared as
+	 * strings, if the other operand is a string.
+	 *
+	 * @return whether this value is compared as number
+	 */
+	public boolean isComparedAsNumber() {
+		Float n = toNumber();
+		return n != null && !(n == 0 && isWhiteSpace());
+	}
+
+	/**
+	 * Generates the code of this value converted with toNumber as C++ float.
+	 *
+	 * @return the code, e.g. "5.0f", or {@code null} if the number is unknown
+	 */
+	public String generateNumberCode() {
+		Float n = toNumber();
+		return n != null ? n + "f" : null;
+	}
+
+	/**
+	 * Returns the range of this value converted with toNumber, if it is an integer.
+	 *
+	 * @return the range or {@code null} if the number is unknown or not an integer
+	 */
+	public IntegerRange getIntegerRange() {
+		Float n = toNumber();
+		return n != null ? IntegerRange.of(n) : null;
+	}
+
+	/**
+	 * Generates the code of this value converted with toNumber as C integer.
+	 *
+	 * @return the code, e.g. "5", or {@code null} if the number is unknown or not
+	 *         an integer
+	 */
+	public String generateIntegerCode() {
+		return getIntegerRange() != null ? Long.toString(toNumber().longValue()) : null;
+	}
+
+	/**
+	 * Generates the code of this value converted with toBoolean as C++ bool.
+	 *
+	 * @return the code, i.e. "true" or "false"
+	 */
+	public String generateBooleanCode() {
+		return toBoolean() ? "true" : "false";
+	}
+
+	/**
+	 * Generates the code that creates this value at run time.
+	 *
+	 * @return the code, e.g. "scratchNumber(5.0)"
+	 */
+	public String generateCode() {
+		switch (type) {
+		case NUMBER:
+			return "scratchNumber(" + number + ")";
+		case STRING:
+			return "scratchString(\"" + string + "\")";
+		default:
+			return "scratchBoolean(" + (booleanValue ? 1 : 0) + ")";
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ConstantValue [" + generateCode() + "]";
+	}
+}
@@ -0,0 +1,96 @@
+package com.github.intrigus.ftd;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.intrigus.ftd.exception.ScratchParseException;
+import com.github.intrigus.ftd.util.LruMap;
+
+/**
+ * An in-memory cache of converted project.json files. The Scratch GUI asks for
+ * the code of the same project again and again, most of the time without any
+ * change to the blocks.
+ * <p>
+ * An entry is addressed by a hash of the blocks of the converted target, see
+ * {@link ScratchProjectParser#computeProjectBlocksKey(JsonParser)}. Computing
+ * it only tokenizes the json, which is a lot cheaper than binding the blocks
+ * and generating the code. Moving blocks around on the canvas does not change
+ * the hash.
+ * </p>
+ * <p>
+ * The entries are evicted in least recently used order once there are more
+ * than the configured maximum and they expire after the configured age. Failed
+ * conversions are not cached.
+ * </p>
+ */
+public class ConversionCache {
+	private final long maxAgeNanos;
+	private final LruMap<String, CachedCode> entries;
+
+	private static class CachedCode {
+		private final String code;
+		private final long createdNanos;
+
+		private CachedCode(String code, long createdNanos) {
+			this.code = code;
+			this.createdNanos = createdNanos;
+		}
+	}
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param maxEntries the maximum number of cached programs
+	 * @param maxAge     the time after which a cached program is converted again
+	 */
+	public ConversionCache(int maxEntries, Duration maxAge) {
+		this.maxAgeNanos = maxAge.toNanos();
+		this.entries = new LruMap<>(maxEntries);
+	}
+
+	/**
+	 * Returns the project.json file converted to an Arduino C++ program. The
+	 * program is only generated if the blocks of the project are not in the
+	 * cache.
+	 *
+	 * @param projectJson the project.json file
+	 * @return the project.json file converted to an Arduino C++ program.
+	 * @throws ScratchParseException if the parsing failed.
+	 * @throws IOException           if the json could not be read or some other
+	 *                               i/o error.
+	 * @see Sb3ToArduinoC#convertProjectJsonToArduinoC(java.io.InputStream)
+	 */
+	public String convertProjectJsonToArduinoC(byte[] projectJson) throws IOException, ScratchParseException {
+		String key;
+		try (JsonParser parser = ScratchProjectParser.createParser(new ByteArrayInputStream(projectJson))) {
+			key = ScratchProjectParser.computeProjectBlocksKey(parser);
+		} catch (JsonProcessingException e) {
+			throw new ScratchParseException(e);
+		}
+		String code = get(key);
+		if (code == null) {
+			code = Sb3ToArduinoC.convertProjectJsonToArduinoC(new ByteArrayInputStream(projectJson));
+			put(key, code);
+		}
+		return code;
+	}
+
+	private synchronized String get(String key) {
+		CachedCode cachedCode = entries.get(key);
+		if (cachedCode == null) {
+			return null;
+		}
+		if (System.nanoTime() - cachedCode.createdNanos >= maxAgeNanos) {
+			entries.remove(key);
+			return null;
+		}
+		return cachedCode.code;
+	}
+
+	private synchronized void put(String key, String code) {
+		entries.put(key, new CachedCode(code, System.nanoTime()));
+	}
+}
@@ -0,0 +1,161 @@
+package com.github.intrigus.ftd;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.intrigus.ftd.exception.ScratchParseException;
+import com.github.intrigus.ftd.util.JsonUtil;
+
+/**
+ * Keeps converting requests until the end of the input is reached, so that the
+ * JVM startup and the loading of the block classes are only paid once and
+ * every further conversion runs on warm code.
+ * <p>
+ * Every line of the input is a json request, every request is answered with a
+ * single line of json in the same order. A request contains exactly one of
+ * <li>{@code path}: the path of a sb3 file</li>
+ * <li>{@code project}: a project.json file</li>
+ * <li>{@code target}: a single {@link ScratchTarget}</li>
+ * and optionally an {@code id} that is copied to the response and an
+ * {@code output} path the generated code is written to instead of returning
+ * it. For example
+ * {@code {"id": 1, "path": "robot.sb3"}} is answered with
+ * {@code {"id":1,"exitCode":0,"code":"...","durationMillis":3}}. If the
+ * conversion fails, the response contains the {@link ExitCode} of the error
+ * together with its description and the error message instead of the code.
+ * </p>
+ */
+class ConversionDaemon {
+	private static final ObjectReader REQUEST_READER = JsonUtil.readerFor(Request.class);
+	private static final ObjectWriter RESPONSE_WRITER = JsonUtil.writer().forType(Response.class);
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	private static class Request {
+		@JsonProperty("id")
+		private JsonNode id;
+		@JsonProperty("path")
+		private String path;
+		@JsonProperty("project")
+		private JsonNode project;
+		@JsonProperty("target")
+		private JsonNode target;
+		@JsonProperty("output")
+		private String output;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private static class Response {
+		@JsonProperty("id")
+		private JsonNode id;
+		@JsonProperty("exitCode")
+		private int exitCode;
+		@JsonProperty("error")
+		private String error;
+		@JsonProperty("errorMessage")
+		private String errorMessage;
+		@JsonProperty("code")
+		private String code;
+		@JsonProperty("durationMillis")
+		private long durationMillis;
+
+		private Response(JsonNode id, ExitCode exitCode) {
+			this.id = id;
+			this.exitCode = exitCode.getCode();
+		}
+	}
+
+	/**
+	 * Answers every request of the input until its end is reached.
+	 *
+	 * @param in  the requests, one per line
+	 * @param out receives the responses, one per line. It is flushed after every
+	 *            response.
+	 * @throws IOException if the input could not be read or the output could not
+	 *                     be written
+	 */
+	static void serve(BufferedReader in, Writer out) throws IOException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.isBlank()) {
+				continue;
+			}
+			out.write(RESPONSE_WRITER.writeValueAsString(answer(line)));
+			out.write(System.lineSeparator());
+			out.flush();
+		}
+	}
+
+	private static Response answer(String line) {
+		long start = System.nanoTime();
+		Request request;
+		try {
+			request = REQUEST_READER.readValue(line);
+		} catch (IOException e) {
+			return failure(null, new ScratchParseException("The request is not valid json: " + e.getMessage()),
+					start);
+		} catch (Throwable e) {
+			return failure(null, e, start);
+		}
+		try {
+			Response response = new Response(request.id, ExitCode.SUCCESS);
+			String code = convert(request);
+			if (request.output == null) {
+				response.code = code;
+			} else {
+				Files.writeString(Paths.get(request.output), code + System.lineSeparator(), StandardCharsets.UTF_8);
+			}
+			response.durationMillis = elapsedMillis(start);
+			return response;
+		} catch (Throwable e) {
+			// also errors like a StackOverflowError of a deeply nested target must only
+			// fail this request, the daemon has to answer the following ones
+			return failure(request.id, e, start);
+		}
+	}
+
+	private static String convert(Request request) throws IOException, ScratchParseException {
+		int sources = (request.path != null ? 1 : 0) + (request.project != null ? 1 : 0)
+				+ (request.target != null ? 1 : 0);
+		if (sources != 1) {
+			throw new ScratchParseException("The request must contain exactly one of path, project and target.");
+		}
+		StringBuilder code = new StringBuilder();
+		if (request.path != null) {
+			Sb3ToArduinoC.convertSb3FileToArduinoC(Paths.get(request.path), code);
+		} else {
+			boolean singleTarget = request.target != null;
+			JsonNode json = singleTarget ? request.target : request.project;
+			Sb3ToArduinoC.convert(REQUEST_READER.treeAsTokens(json), singleTarget, code);
+		}
+		return code.toString();
+	}
+
+	private static Response failure(JsonNode id, Throwable e, long start) {
+		ExitCode exitCode = ExitCode.of(e);
+		Response response = new Response(id, exitCode);
+		response.error = exitCode.getDescription();
+		if (e instanceof JsonProcessingException) {
+			response.errorMessage = ((JsonProcessingException) e).getOriginalMessage();
+		} else {
+			response.errorMessage = e.getMessage() != null ? e.getMessage() : e.toString();
+		}
+		response.durationMillis = elapsedMillis(start);
+		return response;
+	}
+
+	private static long elapsedMillis(long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+}
@@ -0,0 +1,56 @@
+package com.github.intrigus.ftd;
+
+import java.io.IOException;
+
+import com.github.intrigus.ftd.exception.ScratchNoTopLevelHatBlockException;
+import com.github.intrigus.ftd.exception.ScratchParseException;
+import com.github.intrigus.ftd.exception.ScratchTooManyTopLevelHatBlocksException;
+import com.github.intrigus.ftd.exception.ScratchUnimplementedException;
+
+/**
+ * The exit codes of sb3toc. Every exit code except {@link #SUCCESS} stands for
+ * a category of errors.
+ */
+enum ExitCode {
+	SUCCESS(0, "Success"), UNKNOWN_ERROR(1, "Unkown error"), IO_ERROR(2, "I/O error"),
+	PARSING_FAILED(3, "Parsing failed"), UNIMPLEMENTED(4, "Unimplemented Scratch feature"),
+	NO_HAT_BLOCK(5, "No top-level block i.e. hat found"),
+	TOO_MANY_HAT_BLOCKS(6, "More than one top-level block i.e. hat found");
+
+	private final int code;
+	private final String description;
+
+	private ExitCode(int code, String description) {
+		this.code = code;
+		this.description = description;
+	}
+
+	/**
+	 * Returns the category of the error that made a conversion fail.
+	 *
+	 * @param e the error
+	 * @return the matching exit code
+	 */
+	static ExitCode of(Throwable e) {
+		if (e instanceof IOException) {
+			return IO_ERROR;
+		} else if (e instanceof ScratchParseException) {
+			return PARSING_FAILED;
+		} else if (e instanceof ScratchUnimplementedException) {
+			return UNIMPLEMENTED;
+		} else if (e instanceof ScratchNoTopLevelHatBlockException) {
+			return NO_HAT_BLOCK;
+		} else if (e instanceof ScratchTooManyTopLevelHatBlocksException) {
+			return TOO_MANY_HAT_BLOCKS;
+		}
+		return UNKNOWN_ERROR;
+	}
+
+	int getCode() {
+		return code;
+	}
+
+	String getDescription() {
+		return description;
+	}
+}
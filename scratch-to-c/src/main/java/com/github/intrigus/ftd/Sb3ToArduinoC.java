@@ -1,29 +1,39 @@
 package com.github.intrigus.ftd;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.github.intrigus.ftd.exception.ScratchNoTopLevelHatBlockException;
 import com.github.intrigus.ftd.exception.ScratchParseException;
-import com.github.intrigus.ftd.exception.ScratchTooManyTopLevelHatBlocksException;
 import com.github.intrigus.ftd.exception.ScratchUnimplementedException;
 
 /**
  * The main class. Converts a sb3 file to an Arduino C++ program. Can be used
- * just like a unix command line program. Input is taken from System.in, output
- * is written to System.out.
+ * just like a unix command line program. Input is taken from the file given as
+ * argument or from System.in, output is written to System.out. With
+ * {@code --batch} many files are converted at once, see {@link BatchConverter}.
+ * With {@code --serve} it keeps answering conversion requests, see
+ * {@link ConversionDaemon}.
  * <p>
  * Limitations:
  * <li>Only one hat block.</li>
@@ -52,40 +62,72 @@ public class Sb3ToArduinoC {
 		if (parsedArgs.showHelp) {
 			showHelp();
 		}
+		if (parsedArgs.serve) {
+			serve();
+		}
+		if (parsedArgs.batch) {
+			convertBatch(parsedArgs, command);
+		}
+		if (parsedArgs.files.size() > 1) {
+			System.err.println("Only one sb3 file can be converted at once, use --batch for more.");
+			command.usage();
+			System.exit(1);
+		}
 
 		try {
-			System.out.println(convertToArduinoC(System.in));
-		} catch (IOException e) {
-			e.printStackTrace(System.err);
-			System.exit(2);
-		} catch (ScratchParseException e) {
-			e.printStackTrace(System.err);
-			System.exit(3);
-		} catch (ScratchUnimplementedException e) {
-			e.printStackTrace(System.err);
-			System.exit(4);
-		} catch (ScratchNoTopLevelHatBlockException e) {
+			Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+			if (parsedArgs.files.isEmpty()) {
+				convertToArduinoC(System.in, out);
+			} else {
+				convertSb3FileToArduinoC(Paths.get(parsedArgs.files.get(0)), out);
+			}
+			out.write(System.lineSeparator());
+			out.flush();
+		} catch (Exception e) {
 			e.printStackTrace(System.err);
-			System.exit(5);
-		} catch (ScratchTooManyTopLevelHatBlocksException e) {
+			System.exit(ExitCode.of(e).getCode());
+		}
+	}
+
+	private static void serve() {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+			Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+			ConversionDaemon.serve(in, out);
+			System.exit(0);
+		} catch (IOException e) {
 			e.printStackTrace(System.err);
-			System.exit(6);
+			System.exit(ExitCode.IO_ERROR.getCode());
+		}
+	}
+
+	private static void convertBatch(Args parsedArgs, JCommander command) {
+		if (parsedArgs.files.isEmpty() || parsedArgs.threads < 1) {
+			System.err.println("--batch needs at least one sb3 file, folder or glob and at least one thread.");
+			command.usage();
+			System.exit(1);
+		}
+		try {
+			ExitCode exitCode = new BatchConverter(parsedArgs.threads, System.out).convert(parsedArgs.files);
+			System.exit(exitCode.getCode());
 		} catch (Exception e) {
 			e.printStackTrace(System.err);
-			System.exit(1);
+			System.exit(ExitCode.of(e).getCode());
 		}
 	}
 
 	private static void showHelp() {
-		System.out.println("sb3toc takes input from STDIN and writes on sucess to STDOUT");
+		System.out.println("sb3toc takes input from the given sb3 file or from STDIN and writes on sucess to STDOUT");
+		System.out.println("With --batch every given sb3 file is converted to an .ino file next to it");
+		System.out.println("With --serve every line of STDIN is a json request that is answered on STDOUT");
 		System.out.println("Errors are written to STDERR");
 		System.out.println("Exit code to error map:");
-		System.out.println("1: Unkown error");
-		System.out.println("2: I/O error");
-		System.out.println("3: Parsing failed");
-		System.out.println("4: Unimplemented Scratch feature");
-		System.out.println("5: No top-level block i.e. hat found");
-		System.out.println("6: More than one top-level block i.e. hat found");
+		for (ExitCode exitCode : ExitCode.values()) {
+			if (exitCode != ExitCode.SUCCESS) {
+				System.out.println(exitCode.getCode() + ": " + exitCode.getDescription());
+			}
+		}
+		System.out.println("With --batch the exit code is the one of the failed files or 1 if they failed differently");
 	}
 
 	private static void showVersion() {
@@ -97,13 +139,15 @@ public class Sb3ToArduinoC {
 		private boolean showHelp;
 		@Parameter(names = { "-v", "--version" }, description = "Display the current version")
 		private boolean showVersion;
-	}
-
-	private static ObjectMapper newDefaultMapper() {
-		ObjectMapper mapper = new ObjectMapper();
-		SimpleModule module = new SimpleModule();
-		mapper.registerModule(module);
-		return mapper;
+		@Parameter(names = { "--serve" }, description = "Keep converting json requests from STDIN")
+		private boolean serve;
+		@Parameter(names = { "-b", "--batch" }, description = "Convert every sb3 file, folder or glob to .ino files")
+		private boolean batch;
+		@Parameter(names = { "-j",
+				"--threads" }, description = "The number of files converted in parallel with --batch")
+		private int threads = Runtime.getRuntime().availableProcessors();
+		@Parameter(description = "[sb3 file, read from STDIN if missing]")
+		private List<String> files = new ArrayList<>();
 	}
 
 	/**
@@ -118,53 +162,58 @@ public class Sb3ToArduinoC {
 	 *                               other i/o error.
 	 */
 	public static String convertProjectJsonToArduinoC(InputStream is) throws IOException, ScratchParseException {
-		byte[] projectJsonBytes = is.readAllBytes();
-
-		if (projectJsonBytes == null) {
-			throw new RuntimeException("The given json input is empty.");
-		}
-		return convertProjectJsonToArduinoC(projectJsonBytes);
+		StringBuilder code = new StringBuilder();
+		convertProjectJsonToArduinoC(is, code);
+		return code.toString();
 	}
 
 	/**
-	 * Converts a String to an InputStream. The String is assumed to be encoded
-	 * using UTF8.
+	 * Expects an input stream that represents a project.json file. This
+	 * project.json file contains the scratch program. This program is then
+	 * converted to an Arduino C++ program that is appended to the given
+	 * appendable while it is generated.
 	 * 
-	 * @param string the String to convert to an InputStream
-	 * @return the String converted to an InputStream
+	 * @param is  the input stream that represents the project.json file.
+	 * @param out the appendable that receives the Arduino C++ program.
+	 * @throws ScratchParseException if the parsing failed.
+	 * @throws IOException           if the inputs stream could not be read, the
+	 *                               program could not be appended or some other
+	 *                               i/o error.
 	 */
-	private static InputStream toInputStream(String string) {
-		return new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8));
+	public static void convertProjectJsonToArduinoC(InputStream is, Appendable out)
+			throws IOException, ScratchParseException {
+		convert(ScratchProjectParser.createParser(is), false, out);
 	}
 
 	/**
 	 * @see Sb3ToArduinoC#convertProjectJsonToArduinoC(InputStream)
 	 */
 	public static String convertProjectJsonToArduinoC(String code) throws IOException, ScratchParseException {
-		return convertProjectJsonToArduinoC(toInputStream(code));
+		StringBuilder arduinoCode = new StringBuilder();
+		convert(ScratchProjectParser.createParser(code), false, arduinoCode);
+		return arduinoCode.toString();
 	}
 
 	/**
-	 * @see Sb3ToArduinoC#convertProjectJsonToArduinoC(InputStream)
+	 * Reads the blocks with the given parser and converts them.
+	 * 
+	 * @param parser       the parser, it is closed afterwards
+	 * @param singleTarget whether the parser reads a single target or a whole
+	 *                     project.json file
+	 * @param out          the appendable that receives the Arduino C++ program
 	 */
-	private static String convertProjectJsonToArduinoC(byte[] projectJsonBytes)
+	static void convert(JsonParser parser, boolean singleTarget, Appendable out)
 			throws IOException, ScratchParseException {
-		ObjectMapper mapper = newDefaultMapper();
-		ScratchSave scratchSave;
-		try {
-			scratchSave = mapper.readValue(projectJsonBytes, ScratchSave.class);
+		ScratchBlocks scratchBlocks;
+		try (parser) {
+			scratchBlocks = singleTarget ? ScratchProjectParser.readSingleTargetBlocks(parser)
+					: ScratchProjectParser.readProjectBlocks(parser);
 		} catch (JsonParseException | JsonMappingException e) {
-			throw new ScratchParseException(e);
+			throw toScratchException(e);
 		}
 
-		if (scratchSave == null) {
-			throw new RuntimeException("Parsing succeeded, but returned a null value.");
-		}
-
-		ScratchBlocks scratchBlocks = scratchSave.getBlocks();
 		scratchBlocks.init();
-		String code = scratchBlocks.generateCCode();
-		return code;
+		scratchBlocks.generateCCode(out);
 	}
 
 	/**
@@ -178,42 +227,55 @@ public class Sb3ToArduinoC {
 	 *                               other i/o error.
 	 */
 	public static String convertSingleTargetJsonToArduinoC(InputStream is) throws IOException, ScratchParseException {
-		byte[] projectJsonBytes = is.readAllBytes();
+		StringBuilder code = new StringBuilder();
+		convertSingleTargetJsonToArduinoC(is, code);
+		return code.toString();
+	}
 
-		if (projectJsonBytes == null) {
-			throw new RuntimeException("The given json input is empty.");
-		}
-		return convertSingleTargetJsonToArduinoC(projectJsonBytes);
+	/**
+	 * Expects an input stream that represents a single {@link ScratchTarget}. This
+	 * program is then converted to an Arduino C++ program that is appended to the
+	 * given appendable while it is generated.
+	 * 
+	 * @param is  the input stream that represents the single scratch target.
+	 * @param out the appendable that receives the Arduino C++ program.
+	 * @throws ScratchParseException if the parsing failed.
+	 * @throws IOException           if the inputs stream could not be read, the
+	 *                               program could not be appended or some other
+	 *                               i/o error.
+	 */
+	public static void convertSingleTargetJsonToArduinoC(InputStream is, Appendable out)
+			throws IOException, ScratchParseException {
+		convert(ScratchProjectParser.createParser(is), true, out);
 	}
 
 	/**
 	 * @see Sb3ToArduinoC#convertSingleTargetJsonToArduinoC(InputStream)
 	 */
 	public static String convertSingleTargetJsonToArduinoC(String code) throws IOException, ScratchParseException {
-		return convertSingleTargetJsonToArduinoC(toInputStream(code));
+		StringBuilder arduinoCode = new StringBuilder();
+		convertSingleTargetJsonToArduinoC(code, arduinoCode);
+		return arduinoCode.toString();
 	}
 
 	/**
-	 * @see Sb3ToArduinoC#convertSingleTargetJsonToArduinoC(InputStream)
+	 * @see Sb3ToArduinoC#convertSingleTargetJsonToArduinoC(InputStream, Appendable)
 	 */
-	private static String convertSingleTargetJsonToArduinoC(byte[] projectJsonBytes)
+	public static void convertSingleTargetJsonToArduinoC(String code, Appendable out)
 			throws IOException, ScratchParseException {
-		ObjectMapper mapper = newDefaultMapper();
-		ScratchTarget singleScratchTarget;
-		try {
-			singleScratchTarget = mapper.readValue(projectJsonBytes, ScratchTarget.class);
-		} catch (JsonParseException | JsonMappingException e) {
-			throw new ScratchParseException(e);
-		}
+		convert(ScratchProjectParser.createParser(code), true, out);
+	}
 
-		if (singleScratchTarget == null) {
-			throw new RuntimeException("Parsing succeeded, but returned a null value.");
+	/**
+	 * An unsupported block is found while the json is parsed, so Jackson wraps the
+	 * {@link ScratchUnimplementedException}. Unwraps it, so that it can be told
+	 * apart from invalid json.
+	 */
+	private static ScratchParseException toScratchException(JsonProcessingException e) {
+		if (e.getCause() instanceof ScratchUnimplementedException) {
+			throw (ScratchUnimplementedException) e.getCause();
 		}
-
-		ScratchBlocks scratchBlocks = singleScratchTarget.getBlocks();
-		scratchBlocks.init();
-		String code = scratchBlocks.generateCCode();
-		return code;
+		return new ScratchParseException(e);
 	}
 
 	/**
@@ -228,26 +290,91 @@ public class Sb3ToArduinoC {
 	 *                               zip is malformed or some other i/o error.
 	 */
 	public static String convertToArduinoC(InputStream is) throws ScratchParseException, IOException {
+		StringBuilder code = new StringBuilder();
+		convertToArduinoC(is, code);
+		return code.toString();
+	}
+
+	/**
+	 * Expects an input stream that represents a sb3/zip file. The file must contain
+	 * a project.json file that contains the scratch program. This program is then
+	 * converted to an Arduino C++ program that is appended to the given appendable
+	 * while it is generated.
+	 * 
+	 * @param is  the input stream that represents the sb3 file.
+	 * @param out the appendable that receives the Arduino C++ program.
+	 * @throws ScratchParseException if the parsing failed.
+	 * @throws IOException           if the inputs stream could not be read, the
+	 *                               zip is malformed, the program could not be
+	 *                               appended or some other i/o error.
+	 */
+	public static void convertToArduinoC(InputStream is, Appendable out) throws ScratchParseException, IOException {
 		Objects.requireNonNull(is);
+		Objects.requireNonNull(out);
 
+		// a stream can only be read from the start, so all entries in front of
+		// project.json have to be inflated. convertSb3FileToArduinoC avoids this.
 		ZipInputStream zipStream = new ZipInputStream(is);
-		byte[] projectJsonBytes = null;
-
 		ZipEntry entry;
 
 		while ((entry = zipStream.getNextEntry()) != null) {
 			if ("project.json".equals(entry.getName())) {
-				projectJsonBytes = zipStream.readAllBytes();
-				break;
-			} else {
-				continue;
+				convertProjectJsonToArduinoC(zipStream, out);
+				return;
 			}
 		}
 
-		if (projectJsonBytes == null) {
-			throw new RuntimeException("project.json is missing from the .sb3 file.");
-		}
+		throw new RuntimeException("project.json is missing from the .sb3 file.");
+	}
+
+	/**
+	 * Expects the path of a sb3/zip file. The file must contain a project.json
+	 * file that contains the scratch program. This program is then converted to an
+	 * Arduino C++ program.
+	 * 
+	 * @param sb3File the path of the sb3 file.
+	 * @return the sb3 file converted to an Arduino C++ program.
+	 * @throws ScratchParseException if the parsing failed.
+	 * @throws IOException           if the file could not be read or the zip is
+	 *                               malformed or some other i/o error.
+	 */
+	public static String convertSb3FileToArduinoC(Path sb3File) throws ScratchParseException, IOException {
+		StringBuilder code = new StringBuilder();
+		convertSb3FileToArduinoC(sb3File, code);
+		return code.toString();
+	}
+
+	/**
+	 * Expects the path of a sb3/zip file. The file must contain a project.json
+	 * file that contains the scratch program. This program is then converted to an
+	 * Arduino C++ program that is appended to the given appendable while it is
+	 * generated.
+	 * <p>
+	 * Unlike {@link #convertToArduinoC(InputStream, Appendable)} the project.json
+	 * file is looked up in the central directory of the zip file. Only it is read,
+	 * no matter how many costumes and sounds are stored in front of it.
+	 * </p>
+	 * 
+	 * @param sb3File the path of the sb3 file.
+	 * @param out     the appendable that receives the Arduino C++ program.
+	 * @throws ScratchParseException if the parsing failed.
+	 * @throws IOException           if the file could not be read, the zip is
+	 *                               malformed, the program could not be appended
+	 *                               or some other i/o error.
+	 */
+	public static void convertSb3FileToArduinoC(Path sb3File, Appendable out)
+			throws ScratchParseException, IOException {
+		Objects.requireNonNull(sb3File);
+		Objects.requireNonNull(out);
 
-		return convertProjectJsonToArduinoC(projectJsonBytes);
+		try (ZipFile zipFile = new ZipFile(sb3File.toFile())) {
+			ZipEntry entry = zipFile.getEntry("project.json");
+			if (entry == null) {
+				throw new RuntimeException("project.json is missing from the .sb3 file.");
+			}
+			try (InputStream is = zipFile.getInputStream(entry)) {
+				convertProjectJsonToArduinoC(is, out);
+			}
+		}
 	}
 }
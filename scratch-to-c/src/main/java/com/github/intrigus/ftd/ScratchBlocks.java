@@ -1,27 +1,248 @@
 package com.github.intrigus.ftd;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.github.intrigus.ftd.block.CodeEmitter;
+import com.github.intrigus.ftd.block.ProcedureScope;
 import com.github.intrigus.ftd.block.ScratchBlock;
 import com.github.intrigus.ftd.block.ScratchBlock.BlockType;
+import com.github.intrigus.ftd.block.argument_reporter_base;
+import com.github.intrigus.ftd.block.procedures_call;
+import com.github.intrigus.ftd.block.procedures_definition;
+import com.github.intrigus.ftd.block.procedures_prototype;
 import com.github.intrigus.ftd.exception.ScratchNoTopLevelHatBlockException;
+import com.github.intrigus.ftd.exception.ScratchParseException;
 import com.github.intrigus.ftd.exception.ScratchTooManyTopLevelHatBlocksException;
+import com.github.intrigus.ftd.util.HashUtil;
 
-//TODO Documentation
+/**
+ * The blocks of a scratch target.
+ * <p>
+ * The top-level blocks are indexed while the blocks are added. {@link #init()}
+ * then only links the scripts that are actually run, i.e. the script of the
+ * hat block and the definitions of the custom blocks that are called from it.
+ * Scripts that are never run, e.g. loose blocks on the canvas or custom blocks
+ * that are never called, are neither linked nor generated. They are reported
+ * by {@link #getDiagnostics()} and as comment in the generated code. The
+ * argument reporters of every linked custom block definition are resolved with
+ * its {@link ProcedureScope} in the same pass.
+ * </p>
+ */
 public class ScratchBlocks {
 	private Map<String, ScratchBlock> blocks = new HashMap<>();
+	/**
+	 * The hashes of the json of the blocks, if they were read by
+	 * {@link ScratchProjectParser}.
+	 */
+	private Map<String, byte[]> blockHashes = new HashMap<>();
+	private List<String> topLevelBlockIds = new ArrayList<>();
+	private Map<String, List<String>> childIds = new HashMap<>();
+	/**
+	 * The proccode of every custom block by the id of the definition that contains
+	 * its prototype.
+	 */
+	private Map<String, String> definitionProccodes = new HashMap<>();
+
+	/**
+	 * The ids of the blocks of every linked script by the id of its top-level
+	 * block. Filled by {@link #init()}.
+	 */
+	private Map<String, List<String>> scriptBlockIds = new HashMap<>();
+	/**
+	 * The proccodes of the custom blocks that every linked script calls.
+	 */
+	private Map<String, Set<String>> scriptCalls = new HashMap<>();
+	private List<String> diagnostics = new ArrayList<>();
 
 	@JsonAnySetter
 	void setBlock(String key, ScratchBlock value) {
 		blocks.put(key, value);
+		if (value.topLevel) {
+			topLevelBlockIds.add(key);
+		} else if (value.getParentId() != null) {
+			childIds.computeIfAbsent(value.getParentId(), id -> new ArrayList<>()).add(key);
+		}
+		if (value instanceof procedures_prototype) {
+			definitionProccodes.put(value.getParentId(), ((procedures_prototype) value).getProccode());
+		}
+	}
+
+	void setBlock(String key, ScratchBlock value, byte[] hash) {
+		setBlock(key, value);
+		blockHashes.put(key, hash);
+	}
+
+	/**
+	 * Combines the hashes of blocks to a key. The key does not depend on the
+	 * order of the blocks.
+	 * 
+	 * @param blockHashes the hashes of the blocks by their id
+	 * @return the hex encoded SHA-256 hash of the ids and hashes of the blocks
+	 */
+	static String combineBlockHashes(Map<String, byte[]> blockHashes) {
+		MessageDigest digest = HashUtil.newSha256Digest();
+		new TreeMap<>(blockHashes).forEach((id, blockHash) -> {
+			digest.update(id.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(blockHash);
+		});
+		return HashUtil.toHex(digest.digest());
+	}
+
+	/**
+	 * Computes the key of every linked script from the hashes of the blocks it
+	 * consists of.
+	 * 
+	 * @return the keys by the top-level block of the scripts. Empty if the hashes
+	 *         of the blocks are unknown.
+	 */
+	private Map<ScratchBlock, String> computeScriptKeys() {
+		if (blockHashes.size() != blocks.size()) {
+			return Map.of();
+		}
+		Map<ScratchBlock, String> scriptKeys = new IdentityHashMap<>();
+		scriptBlockIds.forEach((scriptId, ids) -> {
+			Map<String, byte[]> hashes = new HashMap<>();
+			for (String id : ids) {
+				hashes.put(id, blockHashes.get(id));
+			}
+			scriptKeys.put(blocks.get(scriptId), combineBlockHashes(hashes));
+		});
+		return scriptKeys;
+	}
+
+	/**
+	 * Links the blocks of the scripts that are run. Starts with the hat blocks and
+	 * follows the calls of custom blocks to their definitions. The blocks of a
+	 * script are found by their parents, so the relations of every linked block
+	 * are resolved exactly once.
+	 * 
+	 * @throws ScratchParseException if the blocks that follow each other form a
+	 *                               loop
+	 */
+	public void init() throws ScratchParseException {
+		Map<String, List<String>> definitionIds = new HashMap<>();
+		Deque<String> pendingScriptIds = new ArrayDeque<>();
+		for (String id : topLevelBlockIds) {
+			BlockType blockType = blocks.get(id).getBlockType();
+			if (blockType == BlockType.HAT) {
+				pendingScriptIds.add(id);
+			} else if (blockType == BlockType.CUSTOM_HAT && definitionProccodes.containsKey(id)) {
+				definitionIds.computeIfAbsent(definitionProccodes.get(id), p -> new ArrayList<>()).add(id);
+			}
+		}
+		while (!pendingScriptIds.isEmpty()) {
+			String scriptId = pendingScriptIds.pop();
+			if (scriptBlockIds.containsKey(scriptId)) {
+				continue;
+			}
+			List<String> ids = new ArrayList<>();
+			Set<String> calls = new HashSet<>();
+			Deque<String> pendingBlockIds = new ArrayDeque<>(List.of(scriptId));
+			while (!pendingBlockIds.isEmpty()) {
+				String id = pendingBlockIds.pop();
+				ScratchBlock block = blocks.get(id);
+				block.updateRelations(blocks);
+				ids.add(id);
+				if (block instanceof procedures_call) {
+					String proccode = ((procedures_call) block).getProccode();
+					calls.add(proccode);
+					pendingScriptIds.addAll(definitionIds.getOrDefault(proccode, List.of()));
+				}
+				pendingBlockIds.addAll(childIds.getOrDefault(id, List.of()));
+			}
+			scriptBlockIds.put(scriptId, ids);
+			scriptCalls.put(scriptId, calls);
+			resolveArguments(blocks.get(scriptId), ids);
+		}
+		checkForLoops();
+		reportUnlinkedScripts();
+	}
+
+	/**
+	 * Checks that following the next blocks of a linked block always ends. The
+	 * code of the blocks that follow each other is generated in a loop, which
+	 * would otherwise never end. Every block is only followed once.
+	 */
+	private void checkForLoops() throws ScratchParseException {
+		Set<ScratchBlock> checkedBlocks = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (List<String> ids : scriptBlockIds.values()) {
+			for (String id : ids) {
+				Set<ScratchBlock> followingBlocks = Collections.newSetFromMap(new IdentityHashMap<>());
+				for (ScratchBlock block = blocks.get(id); block != null
+						&& !checkedBlocks.contains(block); block = block.next) {
+					if (!followingBlocks.add(block)) {
+						// the opcode is consumed as type id, but the name of the class is the opcode
+						throw new ScratchParseException("The blocks following the block \""
+								+ block.getClass().getSimpleName() + "\" form a loop.");
+					}
+				}
+				checkedBlocks.addAll(followingBlocks);
+			}
+		}
+	}
+
+	/**
+	 * Resolves the argument reporters of a linked script. Arguments can only be
+	 * used in the definition of a custom block, so reporters in other scripts keep
+	 * no scope.
+	 */
+	private void resolveArguments(ScratchBlock script, List<String> ids) {
+		if (!(script instanceof procedures_definition)) {
+			return;
+		}
+		ProcedureScope scope = ((procedures_definition) script).getScope();
+		for (String id : ids) {
+			ScratchBlock block = blocks.get(id);
+			if (block instanceof argument_reporter_base) {
+				((argument_reporter_base) block).setScope(scope);
+			}
+		}
 	}
 
-	public void init() {
-		blocks.forEach((s, b) -> b.updateRelations(blocks));
+	private void reportUnlinkedScripts() {
+		Set<String> unlinkedScripts = new TreeSet<>();
+		for (String id : topLevelBlockIds) {
+			if (scriptBlockIds.containsKey(id)) {
+				continue;
+			}
+			if (definitionProccodes.containsKey(id)) {
+				unlinkedScripts.add("The custom block \"" + definitionProccodes.get(id)
+						+ "\" is never used and has been left out.");
+			} else {
+				// the opcode is consumed as type id, but the name of the class is the opcode
+				unlinkedScripts.add("A script starting with the block \"" + blocks.get(id).getClass().getSimpleName()
+						+ "\" is not below a hat block and has been left out.");
+			}
+		}
+		diagnostics.addAll(unlinkedScripts);
+	}
+
+	/**
+	 * Returns the problems that have been found while the blocks were linked, e.g.
+	 * scripts that have been left out because they are never run. The
+	 * diagnostics do not depend on the random ids of the blocks.
+	 * 
+	 * @return the diagnostics, empty if there are no problems
+	 */
+	public List<String> getDiagnostics() {
+		return Collections.unmodifiableList(diagnostics);
 	}
 
 	@Override
@@ -29,46 +250,155 @@ public class ScratchBlocks {
 		return "ScratchBlocks [blocks=" + blocks + "]";
 	}
 
-	private String generateSetupCode() {
-		return "#define FTDUINO_NO_SHORTHANDS\n" + "#include <Ftduino.h>\n" + "#undef FTDUINO_NO_SHORTHANDS\n"
-				+ "#include <Scratch_Ftduino_All.h>\n" + "void setup() {\n" + "  ftduino.init();\n"
-				+ "  pinMode(LED_BUILTIN, OUTPUT);\n" + "}";
+	private void generateSetupCode(CodeEmitter out) {
+		for (String diagnostic : diagnostics) {
+			out.append("// Warning: " + diagnostic + "\n");
+		}
+		out.append("#define FTDUINO_NO_SHORTHANDS\n" + "#include <Ftduino.h>\n" + "#undef FTDUINO_NO_SHORTHANDS\n"
+				+ "#include <Scratch_Ftduino_All.h>\n");
+		out.append("void setup() ").beginBlock();
+		out.append("ftduino.init();\n" + "pinMode(LED_BUILTIN, OUTPUT);\n");
+		out.endBlock();
 	}
 
-	private List<ScratchBlock> getTopLevelBlocks() {
-		return blocks.entrySet().stream().filter(e -> e.getValue().topLevel).map(m -> m.getValue())
-				.collect(Collectors.toList());
+	private List<ScratchBlock> getHatBlocks() {
+		List<ScratchBlock> hatBlocks = new ArrayList<>();
+		for (String id : topLevelBlockIds) {
+			if (blocks.get(id).getBlockType() == BlockType.HAT) {
+				hatBlocks.add(blocks.get(id));
+			}
+		}
+		return hatBlocks;
 	}
 
-	private List<ScratchBlock> getHatBlocks() {
-		return getTopLevelBlocks().stream().filter(e -> e.getBlockType() == BlockType.HAT).collect(Collectors.toList());
+	/**
+	 * Returns the linked scripts in the order their code is generated, so that
+	 * the generated code neither depends on the order of the blocks in the json
+	 * nor on their random ids. The custom block definitions come first. Every
+	 * definition follows the definitions it calls, otherwise they are sorted by
+	 * name. Definitions that call each other are sorted by name. The hat block
+	 * comes last.
+	 */
+	private List<ScratchBlock> getScriptsInGenerationOrder(List<ScratchBlock> hatBlocks) {
+		Map<String, List<String>> definitionIds = new HashMap<>();
+		for (String scriptId : scriptBlockIds.keySet()) {
+			if (definitionProccodes.containsKey(scriptId)) {
+				definitionIds.computeIfAbsent(definitionProccodes.get(scriptId), p -> new ArrayList<>()).add(scriptId);
+			}
+		}
+		// the calls between the defined functions by the proccode of the caller
+		Map<String, Set<String>> calls = new HashMap<>();
+		definitionIds.forEach((proccode, ids) -> {
+			Set<String> callees = new HashSet<>();
+			for (String id : ids) {
+				callees.addAll(scriptCalls.get(id));
+			}
+			callees.retainAll(definitionIds.keySet());
+			callees.remove(proccode);
+			calls.put(proccode, callees);
+		});
+
+		List<ScratchBlock> scripts = new ArrayList<>();
+		Set<String> remainingProccodes = new TreeSet<>(definitionIds.keySet());
+		while (!remainingProccodes.isEmpty()) {
+			Set<String> next = remainingProccodes.stream()
+					.filter(proccode -> Collections.disjoint(calls.get(proccode), remainingProccodes)).findFirst()
+					.map(Set::of).orElseGet(() -> findFirstCycle(remainingProccodes, calls));
+			for (String proccode : new TreeSet<>(next)) {
+				remainingProccodes.remove(proccode);
+				List<String> ids = definitionIds.get(proccode);
+				Collections.sort(ids);
+				ids.forEach(id -> scripts.add(blocks.get(id)));
+			}
+		}
+		scripts.addAll(hatBlocks);
+		return scripts;
 	}
 
-	private List<ScratchBlock> getHatBlocksAndCustomBlocks() {
-		return getTopLevelBlocks().stream()
-				.filter(e -> e.getBlockType() == BlockType.HAT || e.getBlockType() == BlockType.CUSTOM_HAT)
-				.collect(Collectors.toList());
+	/**
+	 * Returns the first cycle of calls, i.e. functions that call each other, which
+	 * does not call any function outside of the cycle. Such a cycle always exists
+	 * if every function calls another one.
+	 */
+	private static Set<String> findFirstCycle(Set<String> proccodes, Map<String, Set<String>> calls) {
+		Map<String, Set<String>> reachableProccodes = new HashMap<>();
+		for (String proccode : proccodes) {
+			Set<String> reachable = new HashSet<>();
+			Deque<String> pending = new ArrayDeque<>(calls.get(proccode));
+			while (!pending.isEmpty()) {
+				String callee = pending.pop();
+				if (proccodes.contains(callee) && reachable.add(callee)) {
+					pending.addAll(calls.get(callee));
+				}
+			}
+			reachableProccodes.put(proccode, reachable);
+		}
+		String first = proccodes.stream().filter(proccode -> reachableProccodes.get(proccode).stream()
+				.allMatch(callee -> reachableProccodes.get(callee).contains(proccode))).findFirst()
+				.orElseThrow(IllegalStateException::new);
+		Set<String> cycle = new HashSet<>(reachableProccodes.get(first));
+		cycle.add(first);
+		return cycle;
 	}
 
 	// TODO properly detect top level( should be called hat blocks)
-	private String generateLoopCode() {
+	private void generateLoopCode(CodeEmitter out) {
 		List<ScratchBlock> hatBlocks = getHatBlocks();
-		List<ScratchBlock> blocksToGenerate = getHatBlocksAndCustomBlocks();
 		if (hatBlocks.size() <= 0) {
 			throw new ScratchNoTopLevelHatBlockException();
 		} else if (hatBlocks.size() > 1) {
 			throw new ScratchTooManyTopLevelHatBlocksException();
 		}
-		String code = "";
+		List<ScratchBlock> blocksToGenerate = getScriptsInGenerationOrder(hatBlocks);
+		Map<ScratchBlock, String> scriptKeys = computeScriptKeys();
+		ScriptCodeCache scriptCodeCache = ScriptCodeCache.getInstance();
 		for (ScratchBlock blockToGenerate : blocksToGenerate) {
-			code += blockToGenerate.generateCode();
-			code += "\n\n";
+			String scriptKey = scriptKeys.get(blockToGenerate);
+			if (scriptKey == null) {
+				blockToGenerate.generateCode(out);
+			} else {
+				// scripts start without indentation, so their code can be reused as is
+				String code = scriptCodeCache.get(scriptKey);
+				if (code == null) {
+					code = blockToGenerate.generateCode();
+					scriptCodeCache.put(scriptKey, code);
+				}
+				out.append(code);
+			}
+			out.append("\n\n");
 		}
-		return code;
 	}
 
+	/**
+	 * Generates the Arduino C++ program and appends it to the given appendable.
+	 * 
+	 * @param out the appendable that receives the program
+	 * @throws IOException if the program could not be appended
+	 */
+	public void generateCCode(Appendable out) throws IOException {
+		CodeEmitter emitter = new CodeEmitter(out);
+		try {
+			generateSetupCode(emitter);
+			generateLoopCode(emitter);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Generates the Arduino C++ program.
+	 * 
+	 * @return the generated program
+	 */
 	public String generateCCode() {
-		return generateSetupCode() + "\n" + generateLoopCode();
+		StringBuilder code = new StringBuilder();
+		try {
+			generateCCode(code);
+		} catch (IOException e) {
+			// a StringBuilder does not throw
+			throw new UncheckedIOException(e);
+		}
+		return code.toString();
 	}
 
 	public class ScratchBlocksDeserializer {
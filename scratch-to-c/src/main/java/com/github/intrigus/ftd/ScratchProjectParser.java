@@ -0,0 +1,247 @@
+package com.github.intrigus.ftd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.github.intrigus.ftd.block.ScratchBlock;
+import com.github.intrigus.ftd.exception.ScratchParseException;
+import com.github.intrigus.ftd.util.HashUtil;
+import com.github.intrigus.ftd.util.JsonUtil;
+
+/**
+ * Reads the blocks that are converted from a project.json file or from a single
+ * {@link ScratchTarget}.
+ * <p>
+ * Besides the blocks a project contains the stage, costumes, sounds, comments
+ * and monitors, which can make up most of the json. The json is therefore read
+ * as a stream of tokens. Only the blocks of the converted target are bound to
+ * objects, everything else is skipped without building any objects. Reading
+ * stops as soon as the blocks have been read.
+ * </p>
+ * <p>
+ * The parsers created by this class read directly from the given stream or
+ * String, so the json is never copied as a whole.
+ * </p>
+ */
+class ScratchProjectParser {
+	/**
+	 * The index of the converted target in the targets of a project. The first
+	 * target is always the stage, the second one the first sprite.
+	 */
+	private static final int CONVERTED_TARGET_INDEX = 1;
+
+	/**
+	 * The fields of a block that only affect how it is displayed in the editor.
+	 */
+	private static final Set<String> COSMETIC_BLOCK_FIELDS = Set.of("x", "y", "comment");
+
+	private static final ObjectReader BLOCK_READER = JsonUtil.readerFor(ScratchBlock.class);
+
+	/**
+	 * Creates a parser that reads the json from the stream. Closing the parser does
+	 * not close the stream.
+	 *
+	 * @param is the stream that contains the json
+	 * @return the parser
+	 * @throws IOException if the parser could not be created
+	 */
+	static JsonParser createParser(InputStream is) throws IOException {
+		return BLOCK_READER.getFactory().createParser(is).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+	}
+
+	/**
+	 * Creates a parser that reads the json from the String.
+	 *
+	 * @param json the json
+	 * @return the parser
+	 * @throws IOException if the parser could not be created
+	 */
+	static JsonParser createParser(String json) throws IOException {
+		return BLOCK_READER.getFactory().createParser(json);
+	}
+
+	/**
+	 * Reads the blocks of the converted target of a project.
+	 *
+	 * @param parser the parser that reads the project.json file
+	 * @return the blocks of the converted target
+	 * @throws ScratchParseException if the project has no target that can be
+	 *                               converted
+	 * @throws IOException           if the json is malformed or can not be bound
+	 *                               to blocks
+	 */
+	static ScratchBlocks readProjectBlocks(JsonParser parser) throws ScratchParseException, IOException {
+		moveToProjectBlocks(parser);
+		return readBlocks(parser);
+	}
+
+	/**
+	 * Reads the blocks of a single target.
+	 *
+	 * @param parser the parser that reads the json of a single target
+	 * @return the blocks of the target
+	 * @throws ScratchParseException if the target has no blocks
+	 * @throws IOException           if the json is malformed or can not be bound
+	 *                               to blocks
+	 */
+	static ScratchBlocks readSingleTargetBlocks(JsonParser parser) throws ScratchParseException, IOException {
+		expectObjectStart(parser);
+		moveToTargetBlocks(parser);
+		return readBlocks(parser);
+	}
+
+	/**
+	 * Reads the blocks whose start token is the current token of the parser. The
+	 * tokens of every block are buffered, so that the block can be hashed before
+	 * it is bound. The hashes let {@link ScratchBlocks} reuse the code of scripts
+	 * that have already been generated.
+	 */
+	private static ScratchBlocks readBlocks(JsonParser parser) throws IOException {
+		ScratchBlocks blocks = new ScratchBlocks();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String id = parser.getCurrentName();
+			parser.nextToken();
+			TokenBuffer blockTokens = new TokenBuffer(parser);
+			blockTokens.copyCurrentStructure(parser);
+			MessageDigest blockDigest = HashUtil.newSha256Digest();
+			try (JsonParser blockParser = blockTokens.asParser()) {
+				blockParser.nextToken();
+				hashBlock(blockParser, blockDigest);
+			}
+			try (JsonParser blockParser = blockTokens.asParser()) {
+				blocks.setBlock(id, BLOCK_READER.readValue(blockParser), blockDigest.digest());
+			}
+		}
+		return blocks;
+	}
+
+	/**
+	 * Computes a key of the blocks of the converted target of a project. Two
+	 * projects have the same key if their blocks generate the same code. The
+	 * position of the blocks on the canvas and their comments are ignored, so is
+	 * the order in which the blocks are stored. Nothing is bound to objects, the
+	 * tokens are only hashed.
+	 *
+	 * @param parser the parser that reads the project.json file
+	 * @return the hex encoded SHA-256 hash of the blocks
+	 * @throws ScratchParseException if the project has no target that can be
+	 *                               converted
+	 * @throws IOException           if the json is malformed
+	 */
+	static String computeProjectBlocksKey(JsonParser parser) throws ScratchParseException, IOException {
+		moveToProjectBlocks(parser);
+		Map<String, byte[]> blockHashes = new HashMap<>();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String id = parser.getCurrentName();
+			parser.nextToken();
+			MessageDigest blockDigest = HashUtil.newSha256Digest();
+			hashBlock(parser, blockDigest);
+			blockHashes.put(id, blockDigest.digest());
+		}
+		return ScratchBlocks.combineBlockHashes(blockHashes);
+	}
+
+	/**
+	 * Hashes the block whose start token is the current token of the parser,
+	 * except for its cosmetic fields.
+	 */
+	private static void hashBlock(JsonParser parser, MessageDigest digest) throws IOException {
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			// e.g. a top-level variable that is stored as array
+			hashValue(parser, digest);
+			return;
+		}
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			parser.nextToken();
+			if (COSMETIC_BLOCK_FIELDS.contains(fieldName)) {
+				parser.skipChildren();
+			} else {
+				hashToken(parser, digest);
+				hashValue(parser, digest);
+			}
+		}
+	}
+
+	/**
+	 * Hashes the value whose first token is the current token of the parser.
+	 */
+	private static void hashValue(JsonParser parser, MessageDigest digest) throws IOException {
+		int depth = 0;
+		do {
+			JsonToken token = parser.currentToken();
+			if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+				depth++;
+			} else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+				depth--;
+			}
+			hashToken(parser, digest);
+		} while (depth > 0 && parser.nextToken() != null);
+	}
+
+	private static void hashToken(JsonParser parser, MessageDigest digest) throws IOException {
+		JsonToken token = parser.currentToken();
+		digest.update((byte) token.ordinal());
+		if (token == JsonToken.FIELD_NAME || token.isScalarValue()) {
+			digest.update(parser.getText().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+		}
+	}
+
+	/**
+	 * Moves the parser to the start token of the blocks of the converted target of
+	 * a project.
+	 */
+	private static void moveToProjectBlocks(JsonParser parser) throws ScratchParseException, IOException {
+		expectObjectStart(parser);
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if ("targets".equals(fieldName) && value == JsonToken.START_ARRAY) {
+				int targetIndex = 0;
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					if (targetIndex == CONVERTED_TARGET_INDEX && parser.currentToken() == JsonToken.START_OBJECT) {
+						moveToTargetBlocks(parser);
+						return;
+					}
+					parser.skipChildren();
+					targetIndex++;
+				}
+			} else {
+				parser.skipChildren();
+			}
+		}
+		throw new ScratchParseException("The project does not contain a sprite that can be converted.");
+	}
+
+	private static void expectObjectStart(JsonParser parser) throws ScratchParseException, IOException {
+		if (parser.nextToken() != JsonToken.START_OBJECT) {
+			throw new ScratchParseException("The json does not start with an object.");
+		}
+	}
+
+	/**
+	 * Moves the parser from the start token of a target to the start token of its
+	 * blocks.
+	 */
+	private static void moveToTargetBlocks(JsonParser parser) throws ScratchParseException, IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if ("blocks".equals(fieldName) && value == JsonToken.START_OBJECT) {
+				return;
+			}
+			parser.skipChildren();
+		}
+		throw new ScratchParseException("The target does not contain any blocks.");
+	}
+}
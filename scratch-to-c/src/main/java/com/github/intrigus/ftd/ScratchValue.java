@@ -6,7 +6,10 @@ import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.intrigus.ftd.block.CodeEmitter;
+import com.github.intrigus.ftd.block.IntegerRange;
 import com.github.intrigus.ftd.block.ScratchBlock;
+import com.github.intrigus.ftd.block.ScratchBlock.ExpressionType;
 import com.github.intrigus.ftd.util.NumberUtil;
 import com.github.intrigus.ftd.util.RelationShip;
 
@@ -101,13 +104,13 @@ public class ScratchValue implements RelationShip {
 		}
 	}
 
-	public String generateCode() {
+	public void generateCode(CodeEmitter out) {
 		if (directValue) {
 			ValueType type = ValueType.forValue((Integer) array.get(0));
 			switch (type) {
 			case Number:
-				return "scratchNumber(" + NumberUtil.asFloat(array.get(1)) + ")";
-			// break;
+				out.append("scratchNumber(" + NumberUtil.asFloat(array.get(1)) + ")");
+				break;
 			case Angle:
 				throw new IllegalStateException("unimplemented");
 			// break;
@@ -118,20 +121,20 @@ public class ScratchValue implements RelationShip {
 				throw new IllegalStateException("unimplemented");
 			// break;
 			case Integer:
-				return "scratchNumber(" + NumberUtil.asInt(array.get(1)) + ")";
-			// break;
+				out.append("scratchNumber(" + NumberUtil.asInt(array.get(1)) + ")");
+				break;
 			case List:
 				throw new IllegalStateException("unimplemented");
 			// break;
 			case PosInteger:
-				return "scratchNumber(" + NumberUtil.asPosInt(array.get(1)) + ")";
-			// break;
+				out.append("scratchNumber(" + NumberUtil.asPosInt(array.get(1)) + ")");
+				break;
 			case PosNumber:
-				return "scratchNumber(" + NumberUtil.asPosFloat(array.get(1)) + ")";
-			// break;
+				out.append("scratchNumber(" + NumberUtil.asPosFloat(array.get(1)) + ")");
+				break;
 			case String:
-				return "scratchString(\"" + array.get(1) + "\")";
-			// break;
+				out.append("scratchString(\"" + array.get(1) + "\")");
+				break;
 			case Variable:
 				throw new IllegalStateException("unimplemented");
 			// break;
@@ -139,10 +142,169 @@ public class ScratchValue implements RelationShip {
 				throw new IllegalStateException("should not happen");
 			}
 		} else {
-			return (this.block != null ? this.block.generateCode() : "");
+			if (this.block != null) {
+				ConstantValue constantValue = this.block.getConstantValue();
+				if (constantValue != null) {
+					out.append(constantValue.generateCode());
+				} else {
+					this.block.generateCode(out);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the type of the value of this input, as far as it is known at
+	 * conversion time.
+	 * 
+	 * @return the type of the value
+	 */
+	public ExpressionType getExpressionType() {
+		ConstantValue constantValue = getConstantValue();
+		if (constantValue != null) {
+			return constantValue.getExpressionType();
+		} else if (!directValue && this.block != null) {
+			return this.block.getExpressionType();
+		} else {
+			return ExpressionType.UNKNOWN;
+		}
+	}
+
+	/**
+	 * Generates the code of this input converted with toNumber as C++ float. Known
+	 * values and number blocks are generated without a ScratchValue.
+	 * 
+	 * @param out the emitter that receives the code
+	 */
+	public void generateNumberCode(CodeEmitter out) {
+		ConstantValue constantValue = getConstantValue();
+		String constantCode = constantValue != null ? constantValue.generateNumberCode() : null;
+		if (constantCode != null) {
+			out.append(constantCode);
+		} else if (getExpressionType() == ExpressionType.NUMBER && !this.block.canBeNaN()) {
+			this.block.generateNumberCode(out);
+		} else if (getExpressionType() == ExpressionType.NUMBER) {
+			out.append("toNumber(");
+			this.block.generateNumberCode(out);
+			out.append(")");
+		} else {
+			out.append("toNumber(");
+			generateCode(out);
+			out.append(")");
+		}
+	}
+
+	/**
+	 * Returns the range of this input converted with toNumber, if it is known to be
+	 * an integer.
+	 * 
+	 * @return the range or {@code null} if the input may be fractional
+	 */
+	public IntegerRange getIntegerRange() {
+		ConstantValue constantValue = getConstantValue();
+		if (constantValue != null) {
+			return constantValue.getIntegerRange();
+		} else if (getExpressionType() == ExpressionType.NUMBER) {
+			return this.block.getIntegerRange();
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Generates the code of this input, that has an integer range, converted with
+	 * toNumber as C integer expression.
+	 * 
+	 * @param out the emitter that receives the code
+	 */
+	public void generateIntegerCode(CodeEmitter out) {
+		ConstantValue constantValue = getConstantValue();
+		if (constantValue != null) {
+			out.append(constantValue.generateIntegerCode());
+		} else {
+			this.block.generateIntegerCode(out);
+		}
+	}
+
+	/**
+	 * Generates the code of this input converted with toBoolean as C++ bool. Known
+	 * values, boolean blocks and number blocks are generated without a
+	 * ScratchValue.
+	 * 
+	 * @param out the emitter that receives the code
+	 */
+	public void generateBooleanCode(CodeEmitter out) {
+		ConstantValue constantValue = getConstantValue();
+		if (constantValue != null) {
+			out.append(constantValue.generateBooleanCode());
+		} else if (getExpressionType() == ExpressionType.BOOLEAN) {
+			this.block.generateBooleanCode(out);
+		} else if (getIntegerRange() != null) {
+			out.append("(");
+			this.block.generateIntegerCode(out);
+			out.append(" != 0)");
+		} else if (getExpressionType() == ExpressionType.NUMBER) {
+			out.append("toBoolean(");
+			this.block.generateNumberCode(out);
+			out.append(")");
+		} else {
+			out.append("toBoolean(");
+			generateCode(out);
+			out.append(")");
+		}
+	}
+
+	/**
+	 * Whether this input is compared as number by compare of cast.cpp, no matter
+	 * what the other operand is.
+	 * 
+	 * @return whether this input is compared as number
+	 */
+	public boolean isComparedAsNumber() {
+		ConstantValue constantValue = getConstantValue();
+		if (constantValue != null) {
+			return constantValue.isComparedAsNumber();
+		} else {
+			return getExpressionType() == ExpressionType.NUMBER;
+		}
+	}
+
+	/**
+	 * Returns the value of this input if it is known at conversion time, i.e. if
+	 * it is a number or string typed into the input or a block whose value is
+	 * known.
+	 * 
+	 * @return the value or {@code null} if it is only known at run time
+	 */
+	public ConstantValue getConstantValue() {
+		if (directValue) {
+			switch (ValueType.forValue((Integer) array.get(0))) {
+			case Number:
+				return ConstantValue.number(NumberUtil.asFloat(array.get(1)));
+			case Integer:
+				return ConstantValue.number(NumberUtil.asInt(array.get(1)));
+			case PosInteger:
+				return ConstantValue.number(NumberUtil.asPosInt(array.get(1)));
+			case PosNumber:
+				return ConstantValue.number(NumberUtil.asPosFloat(array.get(1)));
+			case String:
+				return ConstantValue.string(String.valueOf(array.get(1)));
+			default:
+				return null;
+			}
+		} else if (this.block != null) {
+			return this.block.getConstantValue();
+		} else {
+			return null;
 		}
 	}
 
+	public String generateCode() {
+		StringBuilder code = new StringBuilder();
+		generateCode(new CodeEmitter(code));
+		return code.toString();
+	}
+
 	@Override
 	public void updateRelations(Map<String, ScratchBlock> blocks) {
 		if (directValue == false) {
@@ -0,0 +1,59 @@
+package com.github.intrigus.ftd;
+
+import java.util.Map;
+
+import com.github.intrigus.ftd.util.LruMap;
+
+/**
+ * Remembers the generated code of the most recently generated top-level
+ * scripts, i.e. of hat blocks and custom block definitions together with all
+ * blocks below them. Most of the time only one script of a project changes
+ * between two conversions, so the code of all other scripts can be reused.
+ * <p>
+ * The code of a script only depends on the blocks of the script, so it is
+ * addressed by a hash of these blocks, see
+ * {@link ScratchBlocks#combineBlockHashes(Map)}. The least recently used
+ * scripts are evicted once the cache is full.
+ * </p>
+ */
+class ScriptCodeCache {
+	private static final int MAX_ENTRIES = 1024;
+
+	private final LruMap<String, String> codes = new LruMap<>(MAX_ENTRIES);
+
+	private ScriptCodeCache() {
+	}
+
+	/**
+	 * Returns the cache that is shared by all conversions.
+	 *
+	 * @return the shared cache
+	 */
+	static ScriptCodeCache getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	private static class Holder {
+		private static final ScriptCodeCache INSTANCE = new ScriptCodeCache();
+	}
+
+	/**
+	 * Returns the code of the script with the given key.
+	 *
+	 * @param key the key of the script
+	 * @return the code or {@code null} if the script is not cached
+	 */
+	synchronized String get(String key) {
+		return codes.get(key);
+	}
+
+	/**
+	 * Stores the code of the script with the given key.
+	 *
+	 * @param key  the key of the script
+	 * @param code the generated code of the script
+	 */
+	synchronized void put(String key, String code) {
+		codes.put(key, code);
+	}
+}
@@ -0,0 +1,123 @@
+package com.github.intrigus.ftd.block;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
+/**
+ * Receives the generated C++ code. The blocks append their code to a single
+ * emitter instead of returning and concatenating Strings, so that generating
+ * the code takes time linear in the size of the program. The code can be
+ * written directly to any {@link Appendable}, e.g. a {@link StringBuilder} or a
+ * {@link java.io.Writer}.
+ * <p>
+ * The emitter keeps track of the indentation. Every line is indented according
+ * to the number of blocks, i.e. "{ ... }", that have been opened with
+ * {@link #beginBlock()} and not yet closed with {@link #endBlock()}.
+ * </p>
+ * <p>
+ * Writing to an {@link Appendable} can fail with an {@link IOException}. It is
+ * rethrown as {@link UncheckedIOException}, so that every block does not have
+ * to declare it.
+ * </p>
+ */
+public class CodeEmitter {
+	private static final String INDENTATION = "  ";
+
+	private final Appendable out;
+	private int indentationLevel;
+	private boolean atLineStart = true;
+
+	/**
+	 * Creates a new emitter that writes to the given appendable.
+	 *
+	 * @param out the appendable that receives the generated code
+	 */
+	public CodeEmitter(Appendable out) {
+		this.out = Objects.requireNonNull(out);
+	}
+
+	/**
+	 * Appends code. Every line of the code is indented.
+	 *
+	 * @param code the code to append
+	 * @return this emitter
+	 */
+	public CodeEmitter append(CharSequence code) {
+		try {
+			int lineStart = 0;
+			int length = code.length();
+			for (int i = 0; i < length; i++) {
+				if (code.charAt(i) == '\n') {
+					appendIndented(code, lineStart, i);
+					out.append('\n');
+					atLineStart = true;
+					lineStart = i + 1;
+				}
+			}
+			appendIndented(code, lineStart, length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return this;
+	}
+
+	private void appendIndented(CharSequence code, int start, int end) throws IOException {
+		if (start == end) {
+			return;
+		}
+		if (atLineStart) {
+			for (int i = 0; i < indentationLevel; i++) {
+				out.append(INDENTATION);
+			}
+			atLineStart = false;
+		}
+		out.append(code, start, end);
+	}
+
+	/**
+	 * Appends code followed by a line break.
+	 *
+	 * @param code the code to append
+	 * @return this emitter
+	 */
+	public CodeEmitter appendLine(CharSequence code) {
+		return append(code).append("\n");
+	}
+
+	/**
+	 * Opens a block, i.e. appends "{" and a line break, and increases the
+	 * indentation.
+	 *
+	 * @return this emitter
+	 */
+	public CodeEmitter beginBlock() {
+		append("{\n");
+		indentationLevel++;
+		return this;
+	}
+
+	/**
+	 * Returns the number of blocks that have been opened and not yet closed, e.g.
+	 * to name a variable that must not hide a variable of an enclosing block.
+	 *
+	 * @return the number of open blocks
+	 */
+	public int getOpenBlockCount() {
+		return indentationLevel;
+	}
+
+	/**
+	 * Closes the block that has been opened last, i.e. decreases the indentation
+	 * and appends "}" and a line break.
+	 *
+	 * @return this emitter
+	 */
+	public CodeEmitter endBlock() {
+		if (indentationLevel == 0) {
+			throw new IllegalStateException("There is no block to end.");
+		}
+		indentationLevel--;
+		return append("}\n");
+	}
+}
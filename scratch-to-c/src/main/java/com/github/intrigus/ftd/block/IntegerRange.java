@@ -0,0 +1,125 @@
+package com.github.intrigus.ftd.block;
+
+/**
+ * The range of a number that is known to be an integer at conversion time,
+ * e.g. a counter reading or an integer literal. Such numbers are generated as
+ * int16_t or int32_t instead of float, the ftDuino has no floating point unit.
+ * <p>
+ * Scratch computes with floats, so a range only exists as long as the float
+ * operations would be exact, i.e. the integers are within +-2^24 and the
+ * result can't be -0. Otherwise the number is generated as float, which
+ * preserves the rounding of Scratch.
+ * </p>
+ */
+public final class IntegerRange {
+	/**
+	 * Every integer up to this absolute value can be represented by a float.
+	 */
+	private static final long MAX_EXACT_FLOAT_INTEGER = 1 << 24;
+
+	private final long min;
+	private final long max;
+
+	private IntegerRange(long min, long max) {
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Creates the range [min, max].
+	 *
+	 * @param min the smallest integer of the range
+	 * @param max the largest integer of the range
+	 * @return the range or {@code null} if it exceeds the integers that can be
+	 *         represented by a float
+	 */
+	public static IntegerRange of(long min, long max) {
+		if (min < -MAX_EXACT_FLOAT_INTEGER || max > MAX_EXACT_FLOAT_INTEGER) {
+			return null;
+		}
+		return new IntegerRange(min, max);
+	}
+
+	/**
+	 * Returns the range of a number, if it is an integer.
+	 *
+	 * @param number the number
+	 * @return the range that only contains the number or {@code null} if the
+	 *         number is not an integer, -0 or exceeds the integers that can be
+	 *         represented by a float
+	 */
+	public static IntegerRange of(float number) {
+		if (number != Math.rint(number) || Float.floatToIntBits(number) == Float.floatToIntBits(-0f)) {
+			return null;
+		}
+		return of((long) number, (long) number);
+	}
+
+	/**
+	 * Returns the range of the sum of the integers of two ranges.
+	 *
+	 * @param other the other range
+	 * @return the range of the sum or {@code null} if it is not exact
+	 */
+	public IntegerRange add(IntegerRange other) {
+		return of(min + other.min, max + other.max);
+	}
+
+	/**
+	 * Returns the range of the difference of the integers of two ranges.
+	 *
+	 * @param other the range of the subtrahend
+	 * @return the range of the difference or {@code null} if it is not exact
+	 */
+	public IntegerRange subtract(IntegerRange other) {
+		return of(min - other.max, max - other.min);
+	}
+
+	/**
+	 * Returns the range of the product of the integers of two ranges.
+	 *
+	 * @param other the other range
+	 * @return the range of the product or {@code null} if it is not exact or can
+	 *         be -0, i.e. 0 times a negative number
+	 */
+	public IntegerRange multiply(IntegerRange other) {
+		if ((contains(0) && other.min < 0) || (other.contains(0) && min < 0)) {
+			return null;
+		}
+		long[] products = { min * other.min, min * other.max, max * other.min, max * other.max };
+		long productMin = products[0];
+		long productMax = products[0];
+		for (long product : products) {
+			productMin = Math.min(productMin, product);
+			productMax = Math.max(productMax, product);
+		}
+		return of(productMin, productMax);
+	}
+
+	private boolean contains(long integer) {
+		return min <= integer && integer <= max;
+	}
+
+	/**
+	 * Whether the integers of this range don't fit into an int16_t.
+	 *
+	 * @return whether the integers need an int32_t
+	 */
+	public boolean needsInt32() {
+		return min < Short.MIN_VALUE || max > Short.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the C type that can hold every integer of this range.
+	 *
+	 * @return "int16_t" or "int32_t"
+	 */
+	public String getCType() {
+		return needsInt32() ? "int32_t" : "int16_t";
+	}
+
+	@Override
+	public String toString() {
+		return "IntegerRange [" + min + ", " + max + "]";
+	}
+}
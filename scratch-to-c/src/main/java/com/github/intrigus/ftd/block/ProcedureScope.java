@@ -0,0 +1,72 @@
+package com.github.intrigus.ftd.block;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.intrigus.ftd.util.StringUtil;
+
+/**
+ * The arguments of a custom block. Every argument name is converted to a C
+ * identifier exactly once, when the scope is created, so that the argument
+ * reporters in the definition are resolved in constant time.
+ * <p>
+ * Scratch allows a custom block to have the same argument name more than once,
+ * e.g. foo(ScratchValue b, ScratchValue b). Only the first occurrence can be
+ * used, the others are unnamed parameters. Different argument names can also be
+ * mapped to the same C identifier, e.g. "a%" and "a37". In this case a suffix
+ * is appended to the later ones.
+ * </p>
+ */
+public class ProcedureScope {
+	private final Map<String, String> cIdentifiers = new HashMap<>();
+	private final List<String> cParameters;
+
+	/**
+	 * Creates the scope of a custom block.
+	 *
+	 * @param argumentNames the names of the arguments in the order of the
+	 *                      parameters
+	 */
+	public ProcedureScope(List<String> argumentNames) {
+		cParameters = new ArrayList<>(argumentNames.size());
+		Set<String> usedIdentifiers = new HashSet<>();
+		for (String argumentName : argumentNames) {
+			if (cIdentifiers.containsKey(argumentName)) {
+				cParameters.add("ScratchValue ");
+				continue;
+			}
+			String baseIdentifier = StringUtil.convertToCIdentifier(argumentName);
+			String identifier = baseIdentifier;
+			for (int i = 2; !usedIdentifiers.add(identifier); i++) {
+				identifier = baseIdentifier + "_" + i;
+			}
+			cIdentifiers.put(argumentName, identifier);
+			cParameters.add("ScratchValue " + identifier);
+		}
+	}
+
+	/**
+	 * Returns the C identifier of the argument with the given name.
+	 *
+	 * @param argumentName the name of the argument
+	 * @return the C identifier or {@code null} if the custom block has no such
+	 *         argument
+	 */
+	public String resolve(String argumentName) {
+		return cIdentifiers.get(argumentName);
+	}
+
+	/**
+	 * Returns the parameters of the C function, e.g. "ScratchValue fd_a,
+	 * ScratchValue fd_b".
+	 *
+	 * @return the parameters separated by commas
+	 */
+	public String getCParameters() {
+		return String.join(", ", cParameters);
+	}
+}
@@ -1,10 +1,14 @@
 package com.github.intrigus.ftd.block;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.annotation.JsonTypeIdResolver;
+import com.github.intrigus.ftd.ConstantValue;
+import com.github.intrigus.ftd.ScratchValue;
 import com.github.intrigus.ftd.util.RelationShip;
 
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "opcode")
@@ -27,6 +31,21 @@ public abstract class ScratchBlock implements RelationShip {
 	@JsonProperty(value = "y")
 	private double y;
 
+	private ConstantValue constantValue;
+	private boolean constantValueComputed;
+	private IntegerRange integerRange;
+	private boolean integerRangeComputed;
+
+	/**
+	 * Returns the id of the parent of this block, which is available before the
+	 * relations have been updated.
+	 * 
+	 * @return the id of the parent or {@code null} if this is a top-level block
+	 */
+	public String getParentId() {
+		return parent_;
+	}
+
 	public void updateRelations(Map<String, ScratchBlock> blocks) {
 		this.next = blocks.get(next_);
 		this.parent = blocks.get(parent_);
@@ -37,23 +56,320 @@ public abstract class ScratchBlock implements RelationShip {
 
 	public abstract BlockType getBlockType();
 
-	protected String beginGen() {
-		return "";
+	protected void beginGen(CodeEmitter out) {
+	}
+
+	protected void endGen(CodeEmitter out) {
+	}
+
+	/**
+	 * Whether the code of this block encloses the code of the blocks that follow
+	 * it. This is the case for hat blocks, e.g. the blocks below a when flag
+	 * clicked hat become the body of the loop function.
+	 */
+	private boolean enclosesNextBlocks() {
+		BlockType blockType = getBlockType();
+		return blockType == BlockType.HAT || blockType == BlockType.CUSTOM_HAT;
 	}
 
-	protected String afterGen() {
-		String code = "";
-		if (this.next != null) {
-			code += next.generateCode();
+	/**
+	 * Generates the code of this block and all blocks that follow it.
+	 * <p>
+	 * The blocks that follow each other are generated in a loop, only nested
+	 * blocks, e.g. the sub stack of a C block or the inputs of a block, are
+	 * generated recursively. So a long script does not overflow the stack.
+	 * </p>
+	 * 
+	 * @param out the emitter that receives the code
+	 */
+	public void generateCode(CodeEmitter out) {
+		Deque<ScratchBlock> enclosingBlocks = new ArrayDeque<>();
+		for (ScratchBlock block = this; block != null; block = block.next) {
+			block.beginGen(out);
+			block.gen(out);
+			if (block.enclosesNextBlocks()) {
+				enclosingBlocks.push(block);
+			} else {
+				block.endGen(out);
+			}
+		}
+		while (!enclosingBlocks.isEmpty()) {
+			enclosingBlocks.pop().endGen(out);
 		}
-		return code;
 	}
 
+	/**
+	 * Generates the code of this block and all blocks that follow it.
+	 * 
+	 * @return the generated code
+	 */
 	public String generateCode() {
-		return beginGen() + gen() + afterGen();
+		StringBuilder code = new StringBuilder();
+		generateCode(new CodeEmitter(code));
+		return code.toString();
+	}
+
+	protected abstract void gen(CodeEmitter out);
+
+	/**
+	 * Returns the type of the value of this block, as far as it is known at
+	 * conversion time. The value of a block of a known type can be generated as
+	 * plain C++ float or bool instead of a ScratchValue, see
+	 * {@link #generateNumberCode(CodeEmitter)} and
+	 * {@link #generateBooleanCode(CodeEmitter)}.
+	 * 
+	 * @return the type of the value of this block
+	 */
+	public ExpressionType getExpressionType() {
+		return ExpressionType.UNKNOWN;
+	}
+
+	/**
+	 * Generates the value of a {@link ExpressionType#NUMBER} block as C++ float.
+	 * The float is the number that the ScratchValue of the block would contain, so
+	 * it may be NaN if {@link #canBeNaN()}.
+	 * 
+	 * @param out the emitter that receives the code
+	 */
+	public void generateNumberCode(CodeEmitter out) {
+		throw new IllegalStateException("The block " + getClass().getSimpleName() + " is not a number.");
+	}
+
+	/**
+	 * Generates the value of a {@link ExpressionType#BOOLEAN} block as C++ bool.
+	 * 
+	 * @param out the emitter that receives the code
+	 */
+	public void generateBooleanCode(CodeEmitter out) {
+		throw new IllegalStateException("The block " + getClass().getSimpleName() + " is not a boolean.");
+	}
+
+	/**
+	 * Returns the range of the number of a {@link ExpressionType#NUMBER} block, if
+	 * the number is known to be an integer. The range is computed once, like
+	 * {@link #getConstantValue()}, so that the ranges of a tree of operators are
+	 * computed in linear time.
+	 * 
+	 * @return the range or {@code null} if the number may be fractional
+	 */
+	public final IntegerRange getIntegerRange() {
+		if (!integerRangeComputed) {
+			integerRange = computeIntegerRange();
+			integerRangeComputed = true;
+		}
+		return integerRange;
+	}
+
+	/**
+	 * Computes the range of the number of a {@link ExpressionType#NUMBER} block.
+	 * 
+	 * @return the range or {@code null} if the number may be fractional
+	 * @see #getIntegerRange()
+	 */
+	protected IntegerRange computeIntegerRange() {
+		return null;
+	}
+
+	/**
+	 * Generates the number of a block that has an {@link #getIntegerRange()} as C
+	 * integer expression. The expression is at least as wide as
+	 * {@link IntegerRange#getCType()}.
+	 * 
+	 * @param out the emitter that receives the code
+	 */
+	public void generateIntegerCode(CodeEmitter out) {
+		throw new IllegalStateException("The block " + getClass().getSimpleName() + " is not an integer.");
+	}
+
+	/**
+	 * Whether the number of a {@link ExpressionType#NUMBER} block can be NaN, e.g.
+	 * 0 / 0. Scratch treats NaN as 0 when it is needed as a number, so such a
+	 * number has to be converted with toNumber.
+	 * 
+	 * @return whether the number can be NaN
+	 */
+	public boolean canBeNaN() {
+		return false;
+	}
+
+	/**
+	 * Returns the value of this block if it is already known at conversion time,
+	 * e.g. because it is an operator whose inputs are all known. The code of such a
+	 * block is replaced by the value. The value is computed once, after the
+	 * relations have been updated, so folding a tree of operators takes linear
+	 * time.
+	 * 
+	 * @return the value or {@code null} if it is only known at run time
+	 */
+	public final ConstantValue getConstantValue() {
+		if (!constantValueComputed) {
+			constantValue = computeConstantValue();
+			constantValueComputed = true;
+		}
+		return constantValue;
 	}
 
-	protected abstract String gen();
+	/**
+	 * Computes the value of this block at conversion time. Only operators that
+	 * have no side effects can be computed.
+	 * 
+	 * @return the value or {@code null} if it is only known at run time
+	 * @see #getConstantValue()
+	 */
+	protected ConstantValue computeConstantValue() {
+		return null;
+	}
+
+	/**
+	 * Returns the value of an input of a block if it is known at conversion time.
+	 * 
+	 * @param input        the input, may be {@code null}
+	 * @param defaultValue the value that is used if the input is missing
+	 * @return the value or {@code null} if it is only known at run time
+	 */
+	protected static ConstantValue getInputConstantValue(ScratchValue input, ConstantValue defaultValue) {
+		if (input != null) {
+			return input.getConstantValue();
+		} else {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Generates the code of an input of a block. If the input is missing, the
+	 * default code is used instead.
+	 * 
+	 * @param out         the emitter that receives the code
+	 * @param input       the input, may be {@code null}
+	 * @param defaultCode the code that is used if the input is missing
+	 */
+	protected static void generateInputCode(CodeEmitter out, ScratchValue input, String defaultCode) {
+		if (input != null) {
+			input.generateCode(out);
+		} else {
+			out.append(defaultCode);
+		}
+	}
+
+	/**
+	 * Generates the code of an input of a block as C++ float, i.e. the input
+	 * converted with toNumber.
+	 * 
+	 * @param out          the emitter that receives the code
+	 * @param input        the input, may be {@code null}
+	 * @param defaultValue the value that is used if the input is missing
+	 */
+	protected static void generateNumberInputCode(CodeEmitter out, ScratchValue input, ConstantValue defaultValue) {
+		if (input != null) {
+			input.generateNumberCode(out);
+		} else {
+			out.append(defaultValue.generateNumberCode());
+		}
+	}
+
+	/**
+	 * Returns the range of an input of a block, if it is known to be an integer.
+	 * 
+	 * @param input        the input, may be {@code null}
+	 * @param defaultValue the value that is used if the input is missing
+	 * @return the range or {@code null} if the input may be fractional
+	 */
+	protected static IntegerRange getInputIntegerRange(ScratchValue input, ConstantValue defaultValue) {
+		if (input != null) {
+			return input.getIntegerRange();
+		} else {
+			return defaultValue.getIntegerRange();
+		}
+	}
+
+	/**
+	 * Generates the code of an input of a block, that has an integer range, as C
+	 * integer expression.
+	 * 
+	 * @param out          the emitter that receives the code
+	 * @param input        the input, may be {@code null}
+	 * @param defaultValue the value that is used if the input is missing
+	 */
+	protected static void generateIntegerInputCode(CodeEmitter out, ScratchValue input, ConstantValue defaultValue) {
+		if (input != null) {
+			input.generateIntegerCode(out);
+		} else {
+			out.append(defaultValue.generateIntegerCode());
+		}
+	}
+
+	/**
+	 * Generates the code of an arithmetic operator of two integer inputs as C
+	 * integer expression. Missing inputs are 0. If only the result of the
+	 * operator needs an int32_t, the operation is done as int32_t, because an
+	 * int16_t operation would overflow.
+	 * 
+	 * @param out      the emitter that receives the code
+	 * @param input1   the first input, may be {@code null}
+	 * @param input2   the second input, may be {@code null}
+	 * @param operator the C operator including the surrounding spaces, e.g.
+	 *                 {@code " + "}
+	 */
+	protected void generateIntegerOperatorCode(CodeEmitter out, ScratchValue input1, ScratchValue input2,
+			String operator) {
+		boolean widen = getIntegerRange().needsInt32()
+				&& !getInputIntegerRange(input1, ConstantValue.ZERO).needsInt32()
+				&& !getInputIntegerRange(input2, ConstantValue.ZERO).needsInt32();
+		out.append(widen ? "((int32_t) " : "(");
+		generateIntegerInputCode(out, input1, ConstantValue.ZERO);
+		out.append(operator);
+		generateIntegerInputCode(out, input2, ConstantValue.ZERO);
+		out.append(")");
+	}
+
+	/**
+	 * Generates the code of an input of a block as C++ bool, i.e. the input
+	 * converted with toBoolean.
+	 * 
+	 * @param out          the emitter that receives the code
+	 * @param input        the input, may be {@code null}
+	 * @param defaultValue the value that is used if the input is missing
+	 */
+	protected static void generateBooleanInputCode(CodeEmitter out, ScratchValue input, ConstantValue defaultValue) {
+		if (input != null) {
+			input.generateBooleanCode(out);
+		} else {
+			out.append(defaultValue.generateBooleanCode());
+		}
+	}
+
+	/**
+	 * Whether two operands are compared as numbers by compare of cast.cpp,
+	 * independent of their values at run time.
+	 * 
+	 * @param operand1 the first operand, may be {@code null}
+	 * @param operand2 the second operand, may be {@code null}
+	 * @return whether the operands can be compared with compareNumbers
+	 */
+	protected static boolean isComparedAsNumbers(ScratchValue operand1, ScratchValue operand2) {
+		return operand1 != null && operand2 != null && operand1.isComparedAsNumber()
+				&& operand2.isComparedAsNumber();
+	}
+
+	/**
+	 * Whether compare of cast.cpp compares both operands as numbers and both are
+	 * integers, so that they can be compared as C integers.
+	 * 
+	 * @param operand1 the first operand, may be {@code null}
+	 * @param operand2 the second operand, may be {@code null}
+	 * @return whether the operands can be compared as C integers
+	 */
+	protected static boolean isComparedAsIntegers(ScratchValue operand1, ScratchValue operand2) {
+		return isComparedAsNumbers(operand1, operand2) && operand1.getIntegerRange() != null
+				&& operand2.getIntegerRange() != null;
+	}
+
+	/**
+	 * The type of the value of a block or input.
+	 */
+	public static enum ExpressionType {
+		NUMBER, BOOLEAN, STRING, UNKNOWN
+	}
 
 	public static enum BlockType {
 		HAT, REPORTER, BOOLEAN, C, STACK, CUSTOM_DEF, CUSTOM_HAT, INTERNAL
@@ -1,12 +1,16 @@
 package com.github.intrigus.ftd.block;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonTypeInfo.Id;
 import com.fasterxml.jackson.databind.DatabindContext;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.jsontype.impl.TypeIdResolverBase;
 import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.github.intrigus.ftd.exception.ScratchUnimplementedException;
 
 /**
  * Every block in the json generated by scratch has an opcode field. This is a
@@ -14,10 +18,42 @@ import com.fasterxml.jackson.databind.type.TypeFactory;
  * Java representation of the opcode.
  */
 public class ScratchBlockResolver extends TypeIdResolverBase {
+	/**
+	 * Every implemented block. The name of the class is the opcode of the block.
+	 */
+	private static final List<Class<? extends ScratchBlock>> BLOCK_CLASSES = List.of(argument_reporter_base.class,
+			argument_reporter_boolean.class, argument_reporter_string_number.class, control_forever.class,
+			control_if.class, control_if_else.class, control_repeat.class, control_repeat_until.class,
+			control_wait.class, control_wait_until.class, event_whenflagclicked.class, ftduino_clear_counter.class,
+			ftduino_input.class, ftduino_input_analog.class, ftduino_input_counter.class, ftduino_led.class,
+			ftduino_motor.class, ftduino_motor_stop.class, ftduino_output.class, ftduino_output_analog.class,
+			ftduino_when_input.class, operator_add.class, operator_and.class, operator_divide.class,
+			operator_equals.class, operator_gt.class, operator_lt.class, operator_multiply.class, operator_not.class,
+			operator_or.class, operator_random.class, operator_subtract.class, procedures_call.class,
+			procedures_definition.class, procedures_prototype.class);
 
+	private static final Map<String, JavaType> BLOCK_TYPES = createBlockTypes();
+
+	private static Map<String, JavaType> createBlockTypes() {
+		Map<String, JavaType> blockTypes = new HashMap<>();
+		for (Class<? extends ScratchBlock> blockClass : BLOCK_CLASSES) {
+			blockTypes.put(blockClass.getSimpleName(), TypeFactory.defaultInstance().constructType(blockClass));
+		}
+		return blockTypes;
+	}
+
+	/**
+	 * Resolves the opcode to the class that implements the block.
+	 * 
+	 * @throws ScratchUnimplementedException if there is no such block
+	 */
 	@Override
 	public JavaType typeFromId(DatabindContext context, String id) throws IOException {
-		return TypeFactory.defaultInstance().constructFromCanonical("com.github.intrigus.ftd.block." + id);
+		JavaType blockType = BLOCK_TYPES.get(id);
+		if (blockType == null) {
+			throw new ScratchUnimplementedException("The block with the opcode \"" + id + "\" is not supported.");
+		}
+		return blockType;
 	}
 
 	@Override
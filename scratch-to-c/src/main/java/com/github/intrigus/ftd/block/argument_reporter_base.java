@@ -2,13 +2,10 @@ package com.github.intrigus.ftd.block;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Stream;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.github.intrigus.ftd.util.StringUtil;
 
 /**
  * Scratch allows the user to use arguments in their self-defined functions.
@@ -26,13 +23,17 @@ import com.github.intrigus.ftd.util.StringUtil;
  * Each wait invocation will then have an argument_reporter_base block as input.
  * Such a block will either return the name of its argument, so in our case
  * either "first" or "second" or return a value that represents `0` iff the
- * function definition doesn't contain a matching argument name.
+ * function definition doesn't contain a matching argument name. The names are
+ * resolved with the {@link ProcedureScope} of the definition, which is set
+ * when the blocks are linked.
  */
 @JsonIgnoreProperties(value = { "inputs" })
 public class argument_reporter_base extends ScratchBlock {
 	@JsonProperty(value = "fields")
 	private Field fields;
 
+	private ProcedureScope scope;
+
 	private static class Field {
 		@JsonProperty(value = "VALUE")
 		private Value value;
@@ -55,28 +56,29 @@ public class argument_reporter_base extends ScratchBlock {
 		}
 	}
 
-	private procedures_prototype getPrototype() {
-		// find the parents of this block until there is no parent.
-		// the reduce call will get us the last such block
-		// this will be a procedures_definition block
-		// use it to get the prototype block
-		procedures_definition blockDef = (procedures_definition) Stream
-				.iterate(parent, Objects::nonNull, (block) -> block.parent).reduce((a, b) -> b).get();
-		return blockDef.getPrototypeBlock();
+	/**
+	 * Sets the arguments of the custom block whose definition contains this block.
+	 * Blocks that are not part of a definition have no scope.
+	 * 
+	 * @param scope the arguments of the enclosing custom block
+	 */
+	public void setScope(ProcedureScope scope) {
+		this.scope = scope;
 	}
 
 	@Override
-	public String gen() {
-		procedures_prototype prototype = getPrototype();
+	public void gen(CodeEmitter out) {
 		/*
 		 * in Scratch it is possible to use arguments that are not actually defined as
 		 * argument of the function. I.e. foo(ScratchValue bar) { do(not_defined_arg); }
-		 * Scratch in these cases uses `0` as default value.
+		 * Scratch in these cases uses `0` as default value. The same applies to
+		 * arguments that are used outside of any function.
 		 */
-		if (prototype.mutation.argumentnames.contains(fields.value.argumentName)) {
-			return StringUtil.convertToCIdentifier(fields.value.argumentName);
+		String identifier = scope != null ? scope.resolve(fields.value.argumentName) : null;
+		if (identifier != null) {
+			out.append(identifier);
 		} else {
-			return "scratchNumber(0)";
+			out.append("scratchNumber(0)");
 		}
 	}
 
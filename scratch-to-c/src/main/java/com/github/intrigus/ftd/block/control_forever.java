@@ -22,16 +22,15 @@ public class control_forever extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
+	public void gen(CodeEmitter out) {
 		if (next != null) {
 			throw new IllegalStateException("nothing can be after forever block!");
 		}
-		String code = "while(1) {\n";
+		out.append("while(1) ").beginBlock();
 		if (inputs.subStack != null) {
-			code += inputs.subStack.generateCode();
+			inputs.subStack.generateCode(out);
 		}
-		code += "}\n";
-		return code;
+		out.endBlock();
 	}
 
 	@Override
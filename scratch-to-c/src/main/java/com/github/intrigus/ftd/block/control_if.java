@@ -4,7 +4,7 @@ import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.github.intrigus.ftd.ScratchConstants;
+import com.github.intrigus.ftd.ConstantValue;
 import com.github.intrigus.ftd.ScratchValue;
 
 /**
@@ -26,15 +26,14 @@ public class control_if extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String condition = (inputs.condition != null ? inputs.condition.generateCode()
-				: ScratchConstants.SCRATCH_FALSE);
-		String code = "if(toBoolean(" + condition + ")) {\n";
+	public void gen(CodeEmitter out) {
+		out.append("if(");
+		generateBooleanInputCode(out, inputs.condition, ConstantValue.FALSE);
+		out.append(") ").beginBlock();
 		if (this.inputs.subStack != null) {
-			code += inputs.subStack.generateCode();
+			inputs.subStack.generateCode(out);
 		}
-		code += "}\n";
-		return code;
+		out.endBlock();
 	}
 
 	@Override
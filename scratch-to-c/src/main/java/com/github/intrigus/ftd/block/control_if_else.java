@@ -4,7 +4,7 @@ import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.github.intrigus.ftd.ScratchConstants;
+import com.github.intrigus.ftd.ConstantValue;
 import com.github.intrigus.ftd.ScratchValue;
 
 /**
@@ -30,22 +30,20 @@ public class control_if_else extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String condition = (inputs.condition != null ? inputs.condition.generateCode()
-				: ScratchConstants.SCRATCH_FALSE);
-
-		String code = "if(toBoolean(" + condition + ")) {\n";
+	public void gen(CodeEmitter out) {
+		out.append("if(");
+		generateBooleanInputCode(out, inputs.condition, ConstantValue.FALSE);
+		out.append(") ").beginBlock();
 		if (inputs.subStack != null) {
-			code += inputs.subStack.generateCode();
+			inputs.subStack.generateCode(out);
 		}
-		code += "}\n";
+		out.endBlock();
 
-		code += "else {\n";
+		out.append("else ").beginBlock();
 		if (inputs.subStack2 != null) {
-			code += inputs.subStack2.generateCode();
+			inputs.subStack2.generateCode(out);
 		}
-		code += "}\n";
-		return code;
+		out.endBlock();
 	}
 
 	@Override
@@ -4,12 +4,15 @@ import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.github.intrigus.ftd.ScratchConstants;
+import com.github.intrigus.ftd.ConstantValue;
 import com.github.intrigus.ftd.ScratchValue;
 
 /**
  * Implements the scratch control repeat operator. It repeats the specified
- * sub-blocks the specified times.
+ * sub-blocks the specified times. Like in Scratch the times are evaluated and
+ * rounded only once, before the first repetition. The remaining repetitions
+ * are counted down in a native integer, whose name contains the nesting depth
+ * so that nested repeat blocks don't share it.
  */
 @JsonIgnoreProperties(value = { "fields" })
 public class control_repeat extends ScratchBlock {
@@ -26,22 +29,29 @@ public class control_repeat extends ScratchBlock {
 	}
 
 	@Override
-	protected String beginGen() {
-		String expression = (inputs.times != null ? inputs.times.generateCode() : ScratchConstants.SCRATCH_ZERO);
-		return "for(uint32_t i = 0; toBoolean(s_lt(scratchNumber(i), (" + expression + "))); i++) {\n";
+	protected void beginGen(CodeEmitter out) {
+		String counter = "repeat" + out.getOpenBlockCount();
+		IntegerRange range = getInputIntegerRange(inputs.times, ConstantValue.ZERO);
+		if (range != null) {
+			out.append("for(" + range.getCType() + " " + counter + " = ");
+			generateIntegerInputCode(out, inputs.times, ConstantValue.ZERO);
+		} else {
+			out.append("for(uint32_t " + counter + " = toRepeatCount(");
+			generateNumberInputCode(out, inputs.times, ConstantValue.ZERO);
+			out.append(")");
+		}
+		out.append("; " + counter + " > 0; " + counter + "--) ").beginBlock();
 	}
 
 	@Override
-	protected String afterGen() {
-		return super.afterGen() + "}\n";
+	protected void endGen(CodeEmitter out) {
+		out.endBlock();
 	}
 
 	@Override
-	protected String gen() {
+	protected void gen(CodeEmitter out) {
 		if (inputs.subStack != null) {
-			return inputs.subStack.generateCode();
-		} else {
-			return "";
+			inputs.subStack.generateCode(out);
 		}
 	}
 
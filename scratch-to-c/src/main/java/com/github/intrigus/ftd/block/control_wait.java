@@ -4,7 +4,7 @@ import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.github.intrigus.ftd.ScratchConstants;
+import com.github.intrigus.ftd.ConstantValue;
 import com.github.intrigus.ftd.ScratchValue;
 
 /**
@@ -23,9 +23,10 @@ public class control_wait extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String duration = (inputs.duration != null ? inputs.duration.generateCode() : ScratchConstants.SCRATCH_ZERO);
-		return "delay(1000 * toNumber(" + duration + "));\n";
+	public void gen(CodeEmitter out) {
+		out.append("delay(1000 * ");
+		generateNumberInputCode(out, inputs.duration, ConstantValue.ZERO);
+		out.append(");\n");
 	}
 
 	@Override
@@ -4,7 +4,7 @@ import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.github.intrigus.ftd.ScratchConstants;
+import com.github.intrigus.ftd.ConstantValue;
 import com.github.intrigus.ftd.ScratchValue;
 
 /**
@@ -25,12 +25,10 @@ public class control_wait_until extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String expression = (inputs.condition != null ? inputs.condition.generateCode()
-				: ScratchConstants.SCRATCH_FALSE);
-		String code = "while(toBoolean(s_not((" + expression + ")))) {\n";
-		code += "}\n";
-		return code;
+	public void gen(CodeEmitter out) {
+		out.append("while(!(");
+		generateBooleanInputCode(out, inputs.condition, ConstantValue.FALSE);
+		out.append(")) ").beginBlock().endBlock();
 	}
 
 	@Override
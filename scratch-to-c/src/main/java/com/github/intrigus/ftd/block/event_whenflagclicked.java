@@ -13,21 +13,20 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 public class event_whenflagclicked extends ScratchBlock {
 
 	@Override
-	protected String beginGen() {
-		return "void loop() {\n";
+	protected void beginGen(CodeEmitter out) {
+		out.append("void loop() ").beginBlock();
 	}
 
 	@Override
-	protected String afterGen() {
+	protected void endGen(CodeEmitter out) {
 		// make sure that the blocks are only executed once, since the arduino loop
 		// function is called over and over
-		String onlyOnceTrigger = "while(1) {\n delay(100);\n}\n";
-		return super.afterGen() + onlyOnceTrigger + "}\n";
+		out.append("while(1) ").beginBlock().append("delay(100);\n").endBlock();
+		out.endBlock();
 	}
 
 	@Override
-	public String gen() {
-		return "";
+	public void gen(CodeEmitter out) {
 	}
 
 	@Override
@@ -23,9 +23,8 @@ public class ftduino_clear_counter extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String code = "scratch_ftduino_clear_counter(" + fields.input.generateCode() + ");\n";
-		return code;
+	public void gen(CodeEmitter out) {
+		out.append("scratch_ftduino_clear_counter(" + fields.input.generateEnumCode() + ");\n");
 	}
 
 	@Override
@@ -24,9 +24,20 @@ public class ftduino_input extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String code = "scratch_ftduino_input(" + fields.input.generateCode() + ")";
-		return code;
+	public void gen(CodeEmitter out) {
+		out.append("scratch_ftduino_input(" + fields.input.generateEnumCode() + ")");
+	}
+
+	@Override
+	public void generateBooleanCode(CodeEmitter out) {
+		// scratch_ftduino_input always returns a boolean
+		gen(out);
+		out.append(".boolValue");
+	}
+
+	@Override
+	public ExpressionType getExpressionType() {
+		return ExpressionType.BOOLEAN;
 	}
 
 	@Override
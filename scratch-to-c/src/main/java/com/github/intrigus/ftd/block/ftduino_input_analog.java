@@ -14,7 +14,9 @@ import com.github.intrigus.ftd.field.InputModeField;
  * that can be converted to one. It also expects an input mode specifier or a
  * String that can be converted to one. The supported input modes are
  * {@link com.github.intrigus.ftd.field.InputModeField.InputMode#RESISTANCE} and
- * {@link com.github.intrigus.ftd.field.InputModeField.InputMode#VOLTAGE}
+ * {@link com.github.intrigus.ftd.field.InputModeField.InputMode#VOLTAGE}. The
+ * read value is an integer. If only the number is needed, it is read without a
+ * ScratchValue with scratch_ftduino_input_analog_value.
  */
 @JsonIgnoreProperties(value = "inputs")
 public class ftduino_input_analog extends ScratchBlock {
@@ -31,10 +33,32 @@ public class ftduino_input_analog extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String code = "scratch_ftduino_input_analog(" + fields.input.generateCode() + ", " + fields.mode.generateCode()
-				+ ")";
-		return code;
+	public void gen(CodeEmitter out) {
+		out.append("scratch_ftduino_input_analog(" + fields.input.generateEnumCode() + ", "
+				+ fields.mode.generateEnumCode() + ")");
+	}
+
+	@Override
+	public void generateNumberCode(CodeEmitter out) {
+		out.append("((float) scratch_ftduino_input_analog_value(" + fields.input.generateEnumCode() + ", "
+				+ fields.mode.generateEnumCode() + "))");
+	}
+
+	@Override
+	public ExpressionType getExpressionType() {
+		return ExpressionType.NUMBER;
+	}
+
+	@Override
+	protected IntegerRange computeIntegerRange() {
+		return IntegerRange.of(0, 65535);
+	}
+
+	@Override
+	public void generateIntegerCode(CodeEmitter out) {
+		// the uint16_t would be promoted to an unsigned int
+		out.append("((int32_t) scratch_ftduino_input_analog_value(" + fields.input.generateEnumCode() + ", "
+				+ fields.mode.generateEnumCode() + "))");
 	}
 
 	@Override
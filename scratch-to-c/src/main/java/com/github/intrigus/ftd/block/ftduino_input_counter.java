@@ -10,7 +10,9 @@ import com.github.intrigus.ftd.field.CounterSpecifierField;
  * Implements the ftduino input counter operator. The actual C++ code is in
  * scratch_ftduino.cpp. This is a block that reads a counter input and returns
  * the read value as a float. It expects a counter input specifier or a String
- * that can be converted to one.
+ * that can be converted to one. The counter is an integer. If only the number
+ * is needed, it is read without a ScratchValue with
+ * scratch_ftduino_input_counter_value.
  */
 @JsonIgnoreProperties(value = "inputs")
 public class ftduino_input_counter extends ScratchBlock {
@@ -25,9 +27,29 @@ public class ftduino_input_counter extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String code = "scratch_ftduino_input_counter(" + fields.input.generateCode() + ")";
-		return code;
+	public void gen(CodeEmitter out) {
+		out.append("scratch_ftduino_input_counter(" + fields.input.generateEnumCode() + ")");
+	}
+
+	@Override
+	public void generateNumberCode(CodeEmitter out) {
+		out.append("((float) scratch_ftduino_input_counter_value(" + fields.input.generateEnumCode() + "))");
+	}
+
+	@Override
+	public ExpressionType getExpressionType() {
+		return ExpressionType.NUMBER;
+	}
+
+	@Override
+	protected IntegerRange computeIntegerRange() {
+		return IntegerRange.of(0, 65535);
+	}
+
+	@Override
+	public void generateIntegerCode(CodeEmitter out) {
+		// the uint16_t would be promoted to an unsigned int
+		out.append("((int32_t) scratch_ftduino_input_counter_value(" + fields.input.generateEnumCode() + "))");
 	}
 
 	@Override
@@ -23,9 +23,9 @@ public class ftduino_led extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
+	public void gen(CodeEmitter out) {
 		if (this.fields.value != null) {
-			return "digitalWrite(LED_BUILTIN, (toBoolean(" + fields.value.generateCode() + ")) ? HIGH : LOW);\n";
+			out.append("digitalWrite(LED_BUILTIN, " + fields.value.generateBooleanCode() + " ? HIGH : LOW);\n");
 		} else {
 			throw new RuntimeException("HUH?");
 		}
@@ -40,10 +40,11 @@ public class ftduino_motor extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String code = "scratch_ftduino_motor(" + fields.motor.generateCode() + ", " + fields.dir.generateCode() + ", "
-				+ inputs.value.generateCode() + ");\n";
-		return code;
+	public void gen(CodeEmitter out) {
+		out.append("scratch_ftduino_motor(" + fields.motor.generateEnumCode() + ", " + fields.dir.generateEnumCode()
+				+ ", ");
+		inputs.value.generateCode(out);
+		out.append(");\n");
 	}
 
 	@Override
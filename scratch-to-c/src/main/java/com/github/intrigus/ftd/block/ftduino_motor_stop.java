@@ -33,10 +33,9 @@ public class ftduino_motor_stop extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String code = "scratch_ftduino_motor_stop(" + fields.motor.generateCode() + ", "
-				+ fields.stopMode.generateCode() + ");\n";
-		return code;
+	public void gen(CodeEmitter out) {
+		out.append("scratch_ftduino_motor_stop(" + fields.motor.generateEnumCode() + ", "
+				+ fields.stopMode.generateEnumCode() + ");\n");
 	}
 
 	@Override
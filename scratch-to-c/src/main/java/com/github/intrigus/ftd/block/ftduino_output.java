@@ -29,10 +29,9 @@ public class ftduino_output extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String code = "scratch_ftduino_output(" + fields.output.generateCode() + ", " + fields.value.generateCode()
-				+ ");\n";
-		return code;
+	public void gen(CodeEmitter out) {
+		out.append("scratch_ftduino_output(" + fields.output.generateEnumCode() + ", "
+				+ fields.value.generateBooleanCode() + ");\n");
 	}
 
 	@Override
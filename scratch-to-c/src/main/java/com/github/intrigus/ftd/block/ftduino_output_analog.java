@@ -35,10 +35,10 @@ public class ftduino_output_analog extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String value = (inputs.value != null ? inputs.value.generateCode() : ScratchConstants.SCRATCH_ZERO);
-		String code = "scratch_ftduino_output_analog(" + fields.output.generateCode() + ", " + value + ");\n";
-		return code;
+	public void gen(CodeEmitter out) {
+		out.append("scratch_ftduino_output_analog(" + fields.output.generateEnumCode() + ", ");
+		generateInputCode(out, inputs.value, ScratchConstants.SCRATCH_ZERO);
+		out.append(");\n");
 	}
 
 	@Override
@@ -23,23 +23,20 @@ public class ftduino_when_input extends ScratchBlock {
 	}
 
 	@Override
-	protected String beginGen() {
-		String loopCode = "void loop() {\n";
-		String ifCode = "if(toBoolean(scratch_ftduino_input(" + fields.input.generateCode() + "))) {\n";
-		return loopCode + ifCode;
+	protected void beginGen(CodeEmitter out) {
+		out.append("void loop() ").beginBlock();
+		out.append("if(scratch_ftduino_input(" + fields.input.generateEnumCode() + ").boolValue) ").beginBlock();
 	}
 
 	@Override
-	protected String afterGen() {
-		String ifBody = super.afterGen();
-		String ifConditionEnd = "while(1) {\n delay(100);\n}\n}\n";
-		String loopCodeEnd = "}\n";
-		return ifBody + ifConditionEnd + loopCodeEnd;
+	protected void endGen(CodeEmitter out) {
+		out.append("while(1) ").beginBlock().append("delay(100);\n").endBlock();
+		out.endBlock();
+		out.endBlock();
 	}
 
 	@Override
-	public String gen() {
-		return "";
+	public void gen(CodeEmitter out) {
 	}
 
 	@Override
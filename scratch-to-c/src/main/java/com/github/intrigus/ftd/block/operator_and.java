@@ -4,13 +4,14 @@ import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.github.intrigus.ftd.ScratchConstants;
+import com.github.intrigus.ftd.ConstantValue;
 import com.github.intrigus.ftd.ScratchValue;
 
 /**
- * Implements the scratch and operator. The actual C++ code is in operators.cpp.
- * Computes operand1 && operand2. Both inputs are converted to booleans if
- * necessary. The returned value is a boolean.
+ * Implements the scratch and operator. Computes operand1 && operand2. Both
+ * inputs are converted to booleans if necessary. The returned value is a
+ * boolean. The code is generated as plain bool expression instead of calling
+ * s_and of operators.cpp.
  */
 @JsonIgnoreProperties(value = { "fields" })
 public class operator_and extends ScratchBlock {
@@ -27,10 +28,31 @@ public class operator_and extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String operand1 = (inputs.operand1 != null ? inputs.operand1.generateCode() : ScratchConstants.SCRATCH_FALSE);
-		String operand2 = (inputs.operand2 != null ? inputs.operand2.generateCode() : ScratchConstants.SCRATCH_FALSE);
-		return "s_and((" + operand1 + "), (" + operand2 + "))";
+	public void gen(CodeEmitter out) {
+		out.append("scratchBoolean(");
+		generateBooleanCode(out);
+		out.append(")");
+	}
+
+	@Override
+	public void generateBooleanCode(CodeEmitter out) {
+		// not &&, s_and evaluates both operands
+		out.append("(");
+		generateBooleanInputCode(out, inputs.operand1, ConstantValue.FALSE);
+		out.append(" & ");
+		generateBooleanInputCode(out, inputs.operand2, ConstantValue.FALSE);
+		out.append(")");
+	}
+
+	@Override
+	public ExpressionType getExpressionType() {
+		return ExpressionType.BOOLEAN;
+	}
+
+	@Override
+	protected ConstantValue computeConstantValue() {
+		return ConstantValue.and(getInputConstantValue(inputs.operand1, ConstantValue.FALSE),
+				getInputConstantValue(inputs.operand2, ConstantValue.FALSE));
 	}
 
 	@Override
@@ -4,13 +4,15 @@ import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.github.intrigus.ftd.ScratchConstants;
+import com.github.intrigus.ftd.ConstantValue;
 import com.github.intrigus.ftd.ScratchValue;
 
 /**
- * Implements the scratch divide operator. The actual C++ code is in
- * operators.cpp. Computes number1 / number2. Both inputs are converted to
- * floats if necessary. The returned value is a float.
+ * Implements the scratch divide operator. Computes number1 / number2. Both
+ * inputs are converted to floats if necessary. The returned value is a float.
+ * The code is generated as plain float arithmetic instead of calling s_divide
+ * of operators.cpp, the float is only stored in a ScratchValue if it is needed
+ * as such.
  */
 @JsonIgnoreProperties(value = { "fields" })
 public class operator_divide extends ScratchBlock {
@@ -27,10 +29,35 @@ public class operator_divide extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String number1 = (inputs.number1 != null ? inputs.number1.generateCode() : ScratchConstants.SCRATCH_ZERO);
-		String number2 = (inputs.number2 != null ? inputs.number2.generateCode() : ScratchConstants.SCRATCH_ZERO);
-		return "s_divide((" + number1 + "), (" + number2 + "))";
+	public void gen(CodeEmitter out) {
+		out.append("scratchNumber(");
+		generateNumberCode(out);
+		out.append(")");
+	}
+
+	@Override
+	public void generateNumberCode(CodeEmitter out) {
+		out.append("(");
+		generateNumberInputCode(out, inputs.number1, ConstantValue.ZERO);
+		out.append(" / ");
+		generateNumberInputCode(out, inputs.number2, ConstantValue.ZERO);
+		out.append(")");
+	}
+
+	@Override
+	public ExpressionType getExpressionType() {
+		return ExpressionType.NUMBER;
+	}
+
+	@Override
+	public boolean canBeNaN() {
+		return true;
+	}
+
+	@Override
+	protected ConstantValue computeConstantValue() {
+		return ConstantValue.divide(getInputConstantValue(inputs.number1, ConstantValue.ZERO),
+				getInputConstantValue(inputs.number2, ConstantValue.ZERO));
 	}
 
 	@Override
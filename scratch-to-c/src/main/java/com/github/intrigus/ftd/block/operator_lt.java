@@ -4,6 +4,7 @@ import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.intrigus.ftd.ConstantValue;
 import com.github.intrigus.ftd.ScratchConstants;
 import com.github.intrigus.ftd.ScratchValue;
 
@@ -12,7 +13,9 @@ import com.github.intrigus.ftd.ScratchValue;
  * operators.cpp. Computes operand1 < operand2. Both inputs are converted to
  * floats if necessary. If one argument could not be converted the inputs are
  * converted to strings and compared case insensitive. The returned value is a
- * boolean.
+ * boolean. If both inputs are known to be compared as numbers, they are
+ * compared with compareNumbers of cast.cpp without a ScratchValue, or as
+ * integers if both are integers.
  */
 @JsonIgnoreProperties(value = { "fields" })
 public class operator_lt extends ScratchBlock {
@@ -29,10 +32,49 @@ public class operator_lt extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String operand1 = (inputs.operand1 != null ? inputs.operand1.generateCode() : ScratchConstants.SCRATCH_FALSE);
-		String operand2 = (inputs.operand2 != null ? inputs.operand2.generateCode() : ScratchConstants.SCRATCH_FALSE);
-		return "s_lt((" + operand1 + "), (" + operand2 + "))";
+	public void gen(CodeEmitter out) {
+		if (isComparedAsNumbers(inputs.operand1, inputs.operand2)) {
+			out.append("scratchBoolean(");
+			generateBooleanCode(out);
+			out.append(")");
+		} else {
+			out.append("s_lt((");
+			generateInputCode(out, inputs.operand1, ScratchConstants.SCRATCH_FALSE);
+			out.append("), (");
+			generateInputCode(out, inputs.operand2, ScratchConstants.SCRATCH_FALSE);
+			out.append("))");
+		}
+	}
+
+	@Override
+	public void generateBooleanCode(CodeEmitter out) {
+		if (isComparedAsIntegers(inputs.operand1, inputs.operand2)) {
+			out.append("(");
+			inputs.operand1.generateIntegerCode(out);
+			out.append(" < ");
+			inputs.operand2.generateIntegerCode(out);
+			out.append(")");
+		} else if (isComparedAsNumbers(inputs.operand1, inputs.operand2)) {
+			out.append("(compareNumbers(");
+			generateNumberInputCode(out, inputs.operand1, ConstantValue.ZERO);
+			out.append(", ");
+			generateNumberInputCode(out, inputs.operand2, ConstantValue.ZERO);
+			out.append(") < 0)");
+		} else {
+			gen(out);
+			out.append(".boolValue");
+		}
+	}
+
+	@Override
+	public ExpressionType getExpressionType() {
+		return ExpressionType.BOOLEAN;
+	}
+
+	@Override
+	protected ConstantValue computeConstantValue() {
+		return ConstantValue.lt(getInputConstantValue(inputs.operand1, ConstantValue.FALSE),
+				getInputConstantValue(inputs.operand2, ConstantValue.FALSE));
 	}
 
 	@Override
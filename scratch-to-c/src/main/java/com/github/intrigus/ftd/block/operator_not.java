@@ -4,13 +4,14 @@ import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.github.intrigus.ftd.ScratchConstants;
+import com.github.intrigus.ftd.ConstantValue;
 import com.github.intrigus.ftd.ScratchValue;
 
 /**
- * Implements the scratch not operator. The actual C++ code is in operators.cpp.
- * Computes !operand. The input is converted to a boolean if necessary. The
- * returned value is a boolean.
+ * Implements the scratch not operator. Computes !operand. The input is
+ * converted to a boolean if necessary. The returned value is a boolean. The
+ * code is generated as plain bool expression instead of calling s_not of
+ * operators.cpp.
  */
 @JsonIgnoreProperties(value = { "fields" })
 public class operator_not extends ScratchBlock {
@@ -24,9 +25,27 @@ public class operator_not extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String operand = (inputs.operand != null ? inputs.operand.generateCode() : ScratchConstants.SCRATCH_FALSE);
-		return "s_not((" + operand + "))";
+	public void gen(CodeEmitter out) {
+		out.append("scratchBoolean(");
+		generateBooleanCode(out);
+		out.append(")");
+	}
+
+	@Override
+	public void generateBooleanCode(CodeEmitter out) {
+		out.append("!(");
+		generateBooleanInputCode(out, inputs.operand, ConstantValue.FALSE);
+		out.append(")");
+	}
+
+	@Override
+	public ExpressionType getExpressionType() {
+		return ExpressionType.BOOLEAN;
+	}
+
+	@Override
+	protected ConstantValue computeConstantValue() {
+		return ConstantValue.not(getInputConstantValue(inputs.operand, ConstantValue.FALSE));
 	}
 
 	@Override
@@ -29,11 +29,29 @@ public class operator_random extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String number1 = (inputs.number1 != null ? inputs.number1.generateCode() : ScratchConstants.SCRATCH_ZERO);
-		String number2 = (inputs.number2 != null ? inputs.number2.generateCode() : ScratchConstants.SCRATCH_ZERO);
-		return "s_random(" + number1 + ", " + number2 + ")";
+	public void gen(CodeEmitter out) {
+		out.append("s_random(");
+		generateInputCode(out, inputs.number1, ScratchConstants.SCRATCH_ZERO);
+		out.append(", ");
+		generateInputCode(out, inputs.number2, ScratchConstants.SCRATCH_ZERO);
+		out.append(")");
+	}
+
+	@Override
+	public void generateNumberCode(CodeEmitter out) {
+		// s_random always returns a number
+		gen(out);
+		out.append(".number");
+	}
 
+	@Override
+	public ExpressionType getExpressionType() {
+		return ExpressionType.NUMBER;
+	}
+
+	@Override
+	public boolean canBeNaN() {
+		return true;
 	}
 
 	@Override
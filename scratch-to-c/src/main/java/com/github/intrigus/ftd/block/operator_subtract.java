@@ -4,13 +4,16 @@ import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.github.intrigus.ftd.ScratchConstants;
+import com.github.intrigus.ftd.ConstantValue;
 import com.github.intrigus.ftd.ScratchValue;
 
 /**
- * Implements the scratch subtract operator. The actual C++ code is in
- * operators.cpp. Computes number1 - number2. Both inputs are converted to
- * floats if necessary. The returned value is a float.
+ * Implements the scratch subtract operator. Computes number1 - number2. Both
+ * inputs are converted to floats if necessary. The returned value is a float.
+ * The code is generated as plain float arithmetic instead of calling s_subtract
+ * of operators.cpp, the float is only stored in a ScratchValue if it is needed
+ * as such. If both inputs are integers and the difference is exact, it is
+ * computed as integer, see {@link IntegerRange}.
  */
 @JsonIgnoreProperties(value = { "fields" })
 public class operator_subtract extends ScratchBlock {
@@ -27,10 +30,57 @@ public class operator_subtract extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String number1 = (inputs.number1 != null ? inputs.number1.generateCode() : ScratchConstants.SCRATCH_ZERO);
-		String number2 = (inputs.number2 != null ? inputs.number2.generateCode() : ScratchConstants.SCRATCH_ZERO);
-		return "s_subtract((" + number1 + "), (" + number2 + "))";
+	public void gen(CodeEmitter out) {
+		out.append("scratchNumber(");
+		if (getIntegerRange() != null) {
+			generateIntegerCode(out);
+		} else {
+			generateNumberCode(out);
+		}
+		out.append(")");
+	}
+
+	@Override
+	public void generateNumberCode(CodeEmitter out) {
+		if (getIntegerRange() != null) {
+			out.append("((float) ");
+			generateIntegerCode(out);
+			out.append(")");
+			return;
+		}
+		out.append("(");
+		generateNumberInputCode(out, inputs.number1, ConstantValue.ZERO);
+		out.append(" - ");
+		generateNumberInputCode(out, inputs.number2, ConstantValue.ZERO);
+		out.append(")");
+	}
+
+	@Override
+	public ExpressionType getExpressionType() {
+		return ExpressionType.NUMBER;
+	}
+
+	@Override
+	protected IntegerRange computeIntegerRange() {
+		IntegerRange range1 = getInputIntegerRange(inputs.number1, ConstantValue.ZERO);
+		IntegerRange range2 = getInputIntegerRange(inputs.number2, ConstantValue.ZERO);
+		return range1 != null && range2 != null ? range1.subtract(range2) : null;
+	}
+
+	@Override
+	public void generateIntegerCode(CodeEmitter out) {
+		generateIntegerOperatorCode(out, inputs.number1, inputs.number2, " - ");
+	}
+
+	@Override
+	public boolean canBeNaN() {
+		return getIntegerRange() == null;
+	}
+
+	@Override
+	protected ConstantValue computeConstantValue() {
+		return ConstantValue.subtract(getInputConstantValue(inputs.number1, ConstantValue.ZERO),
+				getInputConstantValue(inputs.number2, ConstantValue.ZERO));
 	}
 
 	@Override
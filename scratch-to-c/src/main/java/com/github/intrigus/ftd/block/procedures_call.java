@@ -5,7 +5,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonAnySetter;
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -13,9 +12,8 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.github.intrigus.ftd.ScratchValue;
+import com.github.intrigus.ftd.util.JsonUtil;
 import com.github.intrigus.ftd.util.RelationShip;
 import com.github.intrigus.ftd.util.StringUtil;
 
@@ -33,7 +31,6 @@ public class procedures_call extends ScratchBlock {
 		@JsonCreator()
 		private Mutation(@JsonProperty(index = 1) Map<String, Object> values)
 				throws JsonParseException, JsonMappingException, IOException {
-			ObjectMapper mapper = new ObjectMapper();
 			Objects.requireNonNull(values, "Values must not be null");
 
 			Object proccode = values.get("proccode");
@@ -47,8 +44,7 @@ public class procedures_call extends ScratchBlock {
 			Object argumentIds = values.get("argumentids");
 			Objects.requireNonNull(argumentIds, "argumentIds must not be null");
 			if (argumentIds instanceof String) {
-				this._argumentIds = mapper.readValue((String) argumentIds,
-						TypeFactory.defaultInstance().constructCollectionType(List.class, String.class));
+				this._argumentIds = JsonUtil.stringListReader().readValue((String) argumentIds);
 			} else {
 				throw new IllegalStateException("argumentIds must be instanceof of String!");
 			}
@@ -78,25 +74,44 @@ public class procedures_call extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		String code = StringUtil.convertToCIdentifier(mutation.proccode) + "(" + gatherFunctionArguments() + ");\n";
-		return code;
+	public void gen(CodeEmitter out) {
+		out.append(StringUtil.convertToCIdentifier(mutation.proccode) + "(");
+		generateFunctionArguments(out);
+		out.append(");\n");
+	}
+
+	/**
+	 * Returns the name of the called function together with placeholders for its
+	 * arguments, e.g. "drive %s %b".
+	 * 
+	 * @return the proccode of the called function
+	 */
+	public String getProccode() {
+		return mutation.proccode;
 	}
 
 	/*
-	 * Provides a String that contains all used arguments.
+	 * Generates the code for all used arguments.
 	 */
-	private String gatherFunctionArguments() {
-		return mutation._argumentIds.stream().map((it) -> inputs.inputs.get(it))
-				// boolean arguments don't get a default input in `inputs.inputs`
-				// they use a default value defined in the corresponding
-				// procedures_prototype.mutation.argumentdefaults
-				// we don't use the provided default value, but instead default to `0` in all
-				// cases we are missing arguments.
-				// this is because scratch is still very fluid it doing this properly is
-				// currently not worth it
-				.map((it) -> "(" + (it != null ? it.generateCode() : "scratchNumber(0)") + ")")
-				.collect(Collectors.joining(", "));
+	private void generateFunctionArguments(CodeEmitter out) {
+		boolean first = true;
+		for (String argumentId : mutation._argumentIds) {
+			if (!first) {
+				out.append(", ");
+			}
+			first = false;
+			ScratchValue argument = inputs.inputs.get(argumentId);
+			// boolean arguments don't get a default input in `inputs.inputs`
+			// they use a default value defined in the corresponding
+			// procedures_prototype.mutation.argumentdefaults
+			// we don't use the provided default value, but instead default to `0` in all
+			// cases we are missing arguments.
+			// this is because scratch is still very fluid it doing this properly is
+			// currently not worth it
+			out.append("(");
+			generateInputCode(out, argument, "scratchNumber(0)");
+			out.append(")");
+		}
 	}
 
 	@Override
@@ -1,14 +1,10 @@
 package com.github.intrigus.ftd.block;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.github.intrigus.ftd.ScratchValue;
-import com.github.intrigus.ftd.util.StringUtil;
 
 /**
  * Implements the scratch block that users can use to define their own
@@ -20,52 +16,27 @@ public class procedures_definition extends ScratchBlock {
 	@JsonProperty(value = "inputs")
 	private Input inputs;
 
+	private ProcedureScope scope;
+
 	private static class Input {
 		@JsonProperty(value = "custom_block")
 		private ScratchValue subStack;
 	}
 
 	@Override
-	protected String beginGen() {
-		procedures_prototype procBlock = (procedures_prototype) inputs.subStack.getBlock();
-		List<String> argumentNames = procBlock.mutation.argumentnames;
-		String code = "void " + inputs.subStack.generateCode() + " (" + argumentsToCFunctionParameters(argumentNames)
-				+ ") {\n";
-		return code;
-	}
-
-	/**
-	 * Converts the given argument names to a String that is compilable by a C
-	 * compiler. Duplicate argument names are silently ignored just like Scratch
-	 * does.
-	 */
-	private static String argumentsToCFunctionParameters(List<String> args) {
-		// Scratch allows self-defined functions to have the same argument names.
-		// I.e. foo(ScratchValue b, ScratchValue b, ScratchValue b)
-		// This is obviously not allowed in C.
-		// That's why we only use the first occurrence of a duplicate argument name.
-		// As usual we also have to convert the parameter names to a valid C identifier
-		List<String> resolvedArgs = new ArrayList<>();
-		List<String> resultArgs = new ArrayList<>();
-		for (String arg : args) {
-			if (!resolvedArgs.contains(arg)) {
-				resultArgs.add("ScratchValue " + StringUtil.convertToCIdentifier(arg));
-			} else {
-				resultArgs.add("ScratchValue ");
-			}
-			resolvedArgs.add(arg);
-		}
-		return resultArgs.stream().collect(Collectors.joining(", "));
+	protected void beginGen(CodeEmitter out) {
+		out.append("void ");
+		inputs.subStack.generateCode(out);
+		out.append(" (" + getScope().getCParameters() + ") ").beginBlock();
 	}
 
 	@Override
-	public String gen() {
-		return "";
+	public void gen(CodeEmitter out) {
 	}
 
 	@Override
-	protected String afterGen() {
-		return super.afterGen() + "}\n";
+	protected void endGen(CodeEmitter out) {
+		out.endBlock();
 	}
 
 	@Override
@@ -78,6 +49,16 @@ public class procedures_definition extends ScratchBlock {
 		return BlockType.CUSTOM_HAT;
 	}
 
+	/**
+	 * Returns the name of the defined function together with placeholders for its
+	 * arguments, e.g. "drive %s %b".
+	 * 
+	 * @return the proccode of the defined function
+	 */
+	public String getProccode() {
+		return getPrototypeBlock().getProccode();
+	}
+
 	/**
 	 * Returns the block that contains the prototype of this definition.
 	 * 
@@ -86,4 +67,17 @@ public class procedures_definition extends ScratchBlock {
 	protected procedures_prototype getPrototypeBlock() {
 		return (procedures_prototype) this.inputs.subStack.getBlock();
 	}
+
+	/**
+	 * Returns the arguments of the defined function. They are resolved the first
+	 * time they are needed, i.e. after the relations have been updated.
+	 * 
+	 * @return the arguments of the defined function
+	 */
+	public ProcedureScope getScope() {
+		if (scope == null) {
+			scope = new ProcedureScope(getPrototypeBlock().mutation.argumentnames);
+		}
+		return scope;
+	}
 }
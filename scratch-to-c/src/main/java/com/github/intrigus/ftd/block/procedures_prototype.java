@@ -10,8 +10,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.github.intrigus.ftd.util.JsonUtil;
 import com.github.intrigus.ftd.util.StringUtil;
 
 /**
@@ -29,7 +28,6 @@ public class procedures_prototype extends ScratchBlock {
 		@JsonCreator()
 		private Mutation(@JsonProperty(index = 1) Map<String, Object> values)
 				throws JsonParseException, JsonMappingException, IOException {
-			ObjectMapper mapper = new ObjectMapper();
 			Objects.requireNonNull(values, "Values must not be null");
 
 			Object proccode = values.get("proccode");
@@ -43,8 +41,7 @@ public class procedures_prototype extends ScratchBlock {
 			Object argumentnames = values.get("argumentnames");
 			Objects.requireNonNull(argumentnames, "argumentnames must not be null");
 			if (argumentnames instanceof String) {
-				this.argumentnames = mapper.readValue((String) argumentnames,
-						TypeFactory.defaultInstance().constructCollectionType(List.class, String.class));
+				this.argumentnames = JsonUtil.stringListReader().readValue((String) argumentnames);
 			} else {
 				throw new IllegalStateException("argumentnames must be instanceof of String!");
 			}
@@ -56,8 +53,18 @@ public class procedures_prototype extends ScratchBlock {
 	}
 
 	@Override
-	public String gen() {
-		return StringUtil.convertToCIdentifier(mutation.proccode);
+	public void gen(CodeEmitter out) {
+		out.append(StringUtil.convertToCIdentifier(mutation.proccode));
+	}
+
+	/**
+	 * Returns the name of the defined function together with placeholders for its
+	 * arguments, e.g. "drive %s %b".
+	 * 
+	 * @return the proccode of the defined function
+	 */
+	public String getProccode() {
+		return mutation.proccode;
 	}
 
 	@Override
@@ -10,4 +10,8 @@ public class ScratchParseException extends Exception {
 		super(cause);
 	}
 
+	public ScratchParseException(String message) {
+		super(message);
+	}
+
 }
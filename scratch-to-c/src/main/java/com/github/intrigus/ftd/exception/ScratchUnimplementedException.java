@@ -6,4 +6,11 @@ package com.github.intrigus.ftd.exception;
  */
 @SuppressWarnings("serial")
 public class ScratchUnimplementedException extends RuntimeException {
+
+	public ScratchUnimplementedException() {
+	}
+
+	public ScratchUnimplementedException(String message) {
+		super(message);
+	}
 }
@@ -41,6 +41,16 @@ public class AnalogInputSpecifierField extends ScratchField {
 		return code;
 	}
 
+	/**
+	 * Generates the code of the input specifier as enumerator of
+	 * scratch_ftduino.h.
+	 * 
+	 * @return the code, e.g. "AnalogInputSpecifier::I1"
+	 */
+	public String generateEnumCode() {
+		return "AnalogInputSpecifier::" + inputSpecifier.name();
+	}
+
 	@Override
 	public String toString() {
 		return "AnalogInputSpecifierField [INPUT=" + INPUT + ", inputSpecifier=" + inputSpecifier + "]";
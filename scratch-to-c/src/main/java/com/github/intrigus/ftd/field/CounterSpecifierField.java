@@ -41,6 +41,16 @@ public class CounterSpecifierField extends ScratchField {
 		return code;
 	}
 
+	/**
+	 * Generates the code of the counter specifier as enumerator of
+	 * scratch_ftduino.h.
+	 * 
+	 * @return the code, e.g. "CounterSpecifier::C1"
+	 */
+	public String generateEnumCode() {
+		return "CounterSpecifier::" + counterSpecifier.name();
+	}
+
 	@Override
 	public String toString() {
 		return "CounterSpecifierField [COUNTER=" + COUNTER + ", counterSpecifier=" + counterSpecifier + "]";
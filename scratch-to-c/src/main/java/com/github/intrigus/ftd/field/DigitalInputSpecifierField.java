@@ -41,6 +41,16 @@ public class DigitalInputSpecifierField extends ScratchField {
 		return code;
 	}
 
+	/**
+	 * Generates the code of the input specifier as enumerator of
+	 * scratch_ftduino.h.
+	 * 
+	 * @return the code, e.g. "DigitalInputSpecifier::I1"
+	 */
+	public String generateEnumCode() {
+		return "DigitalInputSpecifier::" + inputSpecifier.name();
+	}
+
 	@Override
 	public String toString() {
 		return "DigitalInputSpecifierField [INPUT_D=" + INPUT_D + ", inputSpecifier=" + inputSpecifier + "]";
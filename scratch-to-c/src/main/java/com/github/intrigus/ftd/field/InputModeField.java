@@ -41,6 +41,15 @@ public class InputModeField extends ScratchField {
 		return code;
 	}
 
+	/**
+	 * Generates the code of the input mode as enumerator of scratch_ftduino.h.
+	 * 
+	 * @return the code, e.g. "InputMode::VOLTAGE"
+	 */
+	public String generateEnumCode() {
+		return "InputMode::" + inputMode.name();
+	}
+
 	@Override
 	public String toString() {
 		return "InputModeField [MODE=" + MODE + ", inputMode=" + inputMode + "]";
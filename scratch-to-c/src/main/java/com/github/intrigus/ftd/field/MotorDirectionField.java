@@ -41,6 +41,16 @@ public class MotorDirectionField extends ScratchField {
 		return code;
 	}
 
+	/**
+	 * Generates the code of the motor direction as enumerator of
+	 * scratch_ftduino.h.
+	 * 
+	 * @return the code, e.g. "MotorDir::LEFT"
+	 */
+	public String generateEnumCode() {
+		return "MotorDir::" + motorDir.name();
+	}
+
 	@Override
 	public String toString() {
 		return "MotorDirectionField [DIR=" + DIR + ", motorDir=" + motorDir + "]";
@@ -41,6 +41,16 @@ public class MotorSpecifierField extends ScratchField {
 		return code;
 	}
 
+	/**
+	 * Generates the code of the motor specifier as enumerator of
+	 * scratch_ftduino.h.
+	 * 
+	 * @return the code, e.g. "MotorSpecifier::M1"
+	 */
+	public String generateEnumCode() {
+		return "MotorSpecifier::" + motorSpecifier.name();
+	}
+
 	@Override
 	public String toString() {
 		return "MotorSpecifierField [MOTOR=" + MOTOR + ", motorSpecifier=" + motorSpecifier + "]";
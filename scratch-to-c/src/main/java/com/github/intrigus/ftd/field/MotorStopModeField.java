@@ -41,6 +41,15 @@ public class MotorStopModeField extends ScratchField {
 		return code;
 	}
 
+	/**
+	 * Generates the code of the stop mode as enumerator of scratch_ftduino.h.
+	 * 
+	 * @return the code, e.g. "MotorStopMode::STOP"
+	 */
+	public String generateEnumCode() {
+		return "MotorStopMode::" + motorStopMode.name();
+	}
+
 	@Override
 	public String toString() {
 		return "MotorStopModeField [STOPMODE=" + STOPMODE + ", motorStopMode=" + motorStopMode + "]";
@@ -44,6 +44,15 @@ public class OnOffStateField extends ScratchField {
 		}
 	}
 
+	/**
+	 * Generates the code of the state as C++ bool.
+	 * 
+	 * @return the code, i.e. "true" or "false"
+	 */
+	public String generateBooleanCode() {
+		return state == OnOffState.ON ? "true" : "false";
+	}
+
 	@Override
 	public String toString() {
 		return "OnOffStateField [ONOFFSTATE=" + ONOFFSTATE + ", state=" + state + "]";
@@ -41,6 +41,16 @@ public class OutputSpecifierField extends ScratchField {
 		return code;
 	}
 
+	/**
+	 * Generates the code of the output specifier as enumerator of
+	 * scratch_ftduino.h.
+	 * 
+	 * @return the code, e.g. "OutputSpecifier::O1"
+	 */
+	public String generateEnumCode() {
+		return "OutputSpecifier::" + outputSpecifier.name();
+	}
+
 	@Override
 	public String toString() {
 		return "OutputSpecifierField [OUTPUT=" + OUTPUT + ", outputSpecifier=" + outputSpecifier + "]";
@@ -1,7 +1,5 @@
 package com.github.intrigus.ftd.util;
 
-import java.util.stream.Collectors;
-
 public class StringUtil {
 	/**
 	 * Maps an arbitrary scratch name to a suitable C identifier. "fd_" is prefixed,
@@ -15,16 +13,16 @@ public class StringUtil {
 	 * @return the String suitable as a C identifier
 	 */
 	public static String convertToCIdentifier(String input) {
-		String result = "fd_";
-		result += input.codePoints().mapToObj((it) -> toValidPoint(it)).collect(Collectors.joining());
-		return result;
-	}
-
-	private static String toValidPoint(int input) {
-		if (Character.isJavaIdentifierPart(input)) {
-			return Character.toString(input);
-		} else {
-			return Integer.toString(input);
+		StringBuilder result = new StringBuilder(input.length() + 3).append("fd_");
+		for (int i = 0; i < input.length();) {
+			int codePoint = input.codePointAt(i);
+			if (Character.isJavaIdentifierPart(codePoint)) {
+				result.appendCodePoint(codePoint);
+			} else {
+				result.append(codePoint);
+			}
+			i += Character.charCount(codePoint);
 		}
+		return result.toString();
 	}
 }
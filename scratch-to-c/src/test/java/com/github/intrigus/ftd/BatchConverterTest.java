@@ -0,0 +1,121 @@
+package com.github.intrigus.ftd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BatchConverterTest {
+
+	@TempDir
+	public Path projects;
+
+	private void copyResource(String name, Path target) throws IOException {
+		Files.createDirectories(target.getParent());
+		try (InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream(name)) {
+			Files.copy(is, target);
+		}
+	}
+
+	/**
+	 * Returns a target whose script waits until a condition of the given number of
+	 * nested not operators is true. Converting it overflows the stack.
+	 */
+	static String deeplyNestedTarget(int depth) {
+		StringBuilder target = new StringBuilder("{\"blocks\": {\"hat\": {\"opcode\": \"event_whenflagclicked\", "
+				+ "\"next\": \"wait\", \"parent\": null, \"inputs\": {}, \"fields\": {}, \"shadow\": false, "
+				+ "\"topLevel\": true}, \"wait\": {\"opcode\": \"control_wait_until\", \"next\": null, "
+				+ "\"parent\": \"hat\", \"inputs\": {\"CONDITION\": [2, \"not0\"]}, \"fields\": {}, "
+				+ "\"shadow\": false, \"topLevel\": false}");
+		for (int i = 0; i < depth; i++) {
+			target.append(", \"not").append(i).append("\": {\"opcode\": \"operator_not\", \"next\": null, ")
+					.append("\"parent\": \"").append(i == 0 ? "wait" : "not" + (i - 1)).append("\", \"inputs\": {");
+			if (i < depth - 1) {
+				target.append("\"OPERAND\": [2, \"not").append(i + 1).append("\"]");
+			}
+			target.append("}, \"fields\": {}, \"shadow\": false, \"topLevel\": false}");
+		}
+		return target.append("}}").toString();
+	}
+
+	private static void writeSb3(Path sb3File, String targetJson) throws IOException {
+		try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(sb3File))) {
+			zip.putNextEntry(new ZipEntry("project.json"));
+			zip.write(("{\"targets\": [{\"isStage\": true, \"blocks\": {}}, " + targetJson + "]}")
+					.getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+	}
+
+	@Test
+	public void testFolderConversion() throws Exception {
+		copyResource("biggertest.sb3", projects.resolve("biggertest.sb3"));
+		copyResource("motor_stop_test.sb3", projects.resolve("nested/motor_stop_test.sb3"));
+		copyResource("Einparker_V1_0.sb3", projects.resolve("Einparker_V1_0.sb3"));
+
+		ByteArrayOutputStream report = new ByteArrayOutputStream();
+		ExitCode exitCode = new BatchConverter(2, new PrintStream(report, true, StandardCharsets.UTF_8))
+				.convert(List.of(projects.toString()));
+
+		assertEquals(ExitCode.UNIMPLEMENTED, exitCode);
+		String expectedCode = Sb3ToArduinoC.convertSb3FileToArduinoC(projects.resolve("biggertest.sb3"));
+		assertEquals(expectedCode + System.lineSeparator(), Files.readString(projects.resolve("biggertest.ino")));
+		assertTrue(Files.exists(projects.resolve("nested/motor_stop_test.ino")));
+		assertFalse(Files.exists(projects.resolve("Einparker_V1_0.ino")));
+		assertTrue(report.toString(StandardCharsets.UTF_8).contains("Converted 2 of 3 files"));
+	}
+
+	@Test
+	public void testGlobConversion() throws Exception {
+		copyResource("biggertest.sb3", projects.resolve("a/biggertest.sb3"));
+		copyResource("motor_stop_test.sb3", projects.resolve("b/motor_stop_test.sb3"));
+		copyResource("when_input_test.sb3", projects.resolve("b/c/when_input_test.sb3"));
+
+		List<Path> files = BatchConverter.findSb3Files(List.of(projects + "/*/*.sb3", projects + "/a"));
+
+		assertEquals(List.of(projects.resolve("a/biggertest.sb3"), projects.resolve("b/motor_stop_test.sb3")),
+				files);
+		ExitCode exitCode = new BatchConverter(1, new PrintStream(new ByteArrayOutputStream()))
+				.convert(List.of(projects + "/**.sb3"));
+		assertEquals(ExitCode.SUCCESS, exitCode);
+		assertTrue(Files.exists(projects.resolve("b/c/when_input_test.ino")));
+	}
+
+	@Test
+	public void testStackOverflowOnlyFailsItsFile() throws Exception {
+		writeSb3(projects.resolve("a_deep.sb3"), deeplyNestedTarget(100_000));
+		copyResource("biggertest.sb3", projects.resolve("biggertest.sb3"));
+
+		ByteArrayOutputStream report = new ByteArrayOutputStream();
+		ExitCode exitCode = new BatchConverter(1, new PrintStream(report, true, StandardCharsets.UTF_8))
+				.convert(List.of(projects.toString()));
+
+		assertEquals(ExitCode.UNKNOWN_ERROR, exitCode);
+		assertFalse(Files.exists(projects.resolve("a_deep.ino")));
+		assertTrue(Files.exists(projects.resolve("biggertest.ino")));
+		String reportText = report.toString(StandardCharsets.UTF_8);
+		assertTrue(reportText.contains("a_deep.sb3: 1 Unkown error: java.lang.StackOverflowError"));
+		assertTrue(reportText.contains("Converted 1 of 2 files"));
+	}
+
+	@Test
+	public void testMissingFile() throws Exception {
+		ExitCode exitCode = new BatchConverter(1, new PrintStream(new ByteArrayOutputStream()))
+				.convert(List.of(projects.resolve("missing.sb3").toString()));
+
+		assertEquals(ExitCode.IO_ERROR, exitCode);
+	}
+}
@@ -0,0 +1,100 @@
+package com.github.intrigus.ftd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class ConstantValueTest {
+
+	private static String code(ConstantValue value) {
+		return value != null ? value.generateCode() : null;
+	}
+
+	@Test
+	public void testArithmeticUsesFloats() {
+		assertEquals("scratchNumber(5.0)", code(ConstantValue.add(ConstantValue.number(2), ConstantValue.number(3))));
+		assertEquals("scratchNumber(0.3)",
+				code(ConstantValue.add(ConstantValue.number(0.1f), ConstantValue.number(0.2f))));
+		assertEquals("scratchNumber(1.6777216E7)",
+				code(ConstantValue.add(ConstantValue.number(16777216), ConstantValue.number(1))));
+		assertEquals("scratchNumber(0.33333334)",
+				code(ConstantValue.divide(ConstantValue.number(1), ConstantValue.number(3))));
+		assertEquals("scratchNumber(-6.0)",
+				code(ConstantValue.multiply(ConstantValue.number(-2), ConstantValue.string(" 3"))));
+	}
+
+	@Test
+	public void testStringsAreConvertedLikeStrtod() {
+		assertEquals("scratchNumber(3.5)",
+				code(ConstantValue.add(ConstantValue.string("1.5"), ConstantValue.string("2"))));
+		assertEquals("scratchNumber(1.0)",
+				code(ConstantValue.add(ConstantValue.string("abc"), ConstantValue.number(1))));
+		assertEquals("scratchNumber(1.0)", code(ConstantValue.add(ConstantValue.string(""), ConstantValue.number(1))));
+		// strtod would parse a prefix of these strings
+		assertNull(ConstantValue.add(ConstantValue.string("12abc"), ConstantValue.number(1)));
+		assertNull(ConstantValue.add(ConstantValue.string("0x10"), ConstantValue.number(1)));
+		assertNull(ConstantValue.add(ConstantValue.string("nan"), ConstantValue.number(1)));
+	}
+
+	@Test
+	public void testUnreproducibleResultsAreNotFolded() {
+		assertNull(ConstantValue.divide(ConstantValue.number(1), ConstantValue.ZERO));
+		assertNull(ConstantValue.divide(ConstantValue.ZERO, ConstantValue.ZERO));
+		assertNull(ConstantValue.multiply(ConstantValue.number(3e38f), ConstantValue.number(10)));
+		assertNull(ConstantValue.multiply(ConstantValue.number(1e-30f), ConstantValue.number(1e-10f)));
+		// the runtime reads a boolean as string when it is converted to a number
+		assertNull(ConstantValue.add(ConstantValue.bool(true), ConstantValue.number(1)));
+		assertNull(ConstantValue.string("say \"hi\""));
+	}
+
+	@Test
+	public void testComparisons() {
+		assertEquals("scratchBoolean(1)", code(ConstantValue.lt(ConstantValue.number(2), ConstantValue.string("10"))));
+		assertEquals("scratchBoolean(0)", code(ConstantValue.gt(ConstantValue.number(2), ConstantValue.string("10"))));
+		assertEquals("scratchBoolean(1)",
+				code(ConstantValue.equalTo(ConstantValue.number(50), ConstantValue.string("50.0"))));
+		// strings that are not numbers are compared case insensitive
+		assertEquals("scratchBoolean(1)",
+				code(ConstantValue.equalTo(ConstantValue.string("Hello"), ConstantValue.string("hELLO"))));
+		assertEquals("scratchBoolean(1)",
+				code(ConstantValue.lt(ConstantValue.string("10"), ConstantValue.string("a"))));
+		// numbers would be formatted with dtostrf
+		assertNull(ConstantValue.equalTo(ConstantValue.number(1), ConstantValue.string("a")));
+		assertNull(ConstantValue.lt(ConstantValue.bool(true), ConstantValue.number(1)));
+	}
+
+	@Test
+	public void testBooleans() {
+		assertEquals("scratchBoolean(1)", code(ConstantValue.not(ConstantValue.string("FALSE"))));
+		assertEquals("scratchBoolean(0)", code(ConstantValue.not(ConstantValue.string("a"))));
+		assertEquals("scratchBoolean(1)", code(ConstantValue.not(ConstantValue.string("0"))));
+		assertEquals("scratchBoolean(1)", code(ConstantValue.not(ConstantValue.number(-0f))));
+		assertEquals("scratchBoolean(1)", code(ConstantValue.and(ConstantValue.number(2), ConstantValue.bool(true))));
+		assertEquals("scratchBoolean(0)", code(ConstantValue.or(ConstantValue.FALSE, ConstantValue.string(""))));
+		assertNull(ConstantValue.and(null, ConstantValue.bool(true)));
+	}
+
+	@Test
+	public void testNativeCode() {
+		assertEquals("2.5f", ConstantValue.string(" 2.5").generateNumberCode());
+		assertEquals("0.0f", ConstantValue.string("abc").generateNumberCode());
+		assertNull(ConstantValue.string("12abc").generateNumberCode());
+		assertNull(ConstantValue.bool(true).generateNumberCode());
+		assertEquals("false", ConstantValue.string("false").generateBooleanCode());
+		assertEquals("true", ConstantValue.number(-1).generateBooleanCode());
+	}
+
+	@Test
+	public void testComparedAsNumber() {
+		assertTrue(ConstantValue.number(0).isComparedAsNumber());
+		assertTrue(ConstantValue.string("50").isComparedAsNumber());
+		assertTrue(ConstantValue.string(" ").isComparedAsNumber());
+		// compared as strings if the other operand is a string
+		assertFalse(ConstantValue.string("0").isComparedAsNumber());
+		assertFalse(ConstantValue.string("abc").isComparedAsNumber());
+		assertFalse(ConstantValue.bool(false).isComparedAsNumber());
+	}
+}
@@ -0,0 +1,102 @@
+package com.github.intrigus.ftd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.intrigus.ftd.exception.ScratchParseException;
+import com.github.intrigus.ftd.util.JsonUtil;
+
+public class ConversionCacheTest {
+
+	static byte[] readProjectJson(String sb3Name) throws IOException {
+		try (InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream(sb3Name);
+				ZipInputStream zipStream = new ZipInputStream(is)) {
+			ZipEntry entry;
+			while ((entry = zipStream.getNextEntry()) != null) {
+				if ("project.json".equals(entry.getName())) {
+					return zipStream.readAllBytes();
+				}
+			}
+		}
+		throw new IllegalArgumentException(sb3Name + " does not contain a project.json file");
+	}
+
+	static ObjectNode getBlock(JsonNode project, String opcode) {
+		for (JsonNode block : project.get("targets").get(1).get("blocks")) {
+			if (opcode.equals(block.get("opcode").asText())) {
+				return (ObjectNode) block;
+			}
+		}
+		throw new IllegalArgumentException("There is no block with the opcode " + opcode);
+	}
+
+	@Test
+	public void testMovedBlocksHitTheCache() throws Exception {
+		byte[] projectJson = readProjectJson("biggertest.sb3");
+		JsonNode project = JsonUtil.readerFor(JsonNode.class).readValue(projectJson);
+		ObjectNode hatBlock = getBlock(project, "event_whenflagclicked");
+		hatBlock.put("x", hatBlock.get("x").asInt() + 100);
+		hatBlock.put("y", hatBlock.get("y").asInt() - 50);
+		byte[] movedProjectJson = JsonUtil.writer().writeValueAsBytes(project);
+		ConversionCache cache = new ConversionCache(16, Duration.ofMinutes(10));
+
+		String code = cache.convertProjectJsonToArduinoC(projectJson);
+
+		assertEquals(Sb3ToArduinoC.convertProjectJsonToArduinoC(new String(projectJson, "UTF-8")), code);
+		assertSame(code, cache.convertProjectJsonToArduinoC(movedProjectJson));
+	}
+
+	@Test
+	public void testChangedBlocksMissTheCache() throws Exception {
+		byte[] projectJson = readProjectJson("biggertest.sb3");
+		JsonNode project = JsonUtil.readerFor(JsonNode.class).readValue(projectJson);
+		ObjectNode repeatBlock = getBlock(project, "control_repeat");
+		((ArrayNode) repeatBlock.get("inputs").get("TIMES").get(1)).set(1,
+				JsonUtil.readerFor(JsonNode.class).readValue("\"42\""));
+		byte[] changedProjectJson = JsonUtil.writer().writeValueAsBytes(project);
+		ConversionCache cache = new ConversionCache(16, Duration.ofMinutes(10));
+
+		String code = cache.convertProjectJsonToArduinoC(projectJson);
+		String changedCode = cache.convertProjectJsonToArduinoC(changedProjectJson);
+
+		assertNotEquals(code, changedCode);
+		assertSame(changedCode, cache.convertProjectJsonToArduinoC(changedProjectJson));
+	}
+
+	@Test
+	public void testExpiredAndEvictedEntries() throws Exception {
+		byte[] projectJson = readProjectJson("biggertest.sb3");
+		byte[] otherProjectJson = readProjectJson("motor_stop_test.sb3");
+
+		ConversionCache expiringCache = new ConversionCache(16, Duration.ZERO);
+		assertNotSame(expiringCache.convertProjectJsonToArduinoC(projectJson),
+				expiringCache.convertProjectJsonToArduinoC(projectJson));
+
+		ConversionCache smallCache = new ConversionCache(1, Duration.ofMinutes(10));
+		String code = smallCache.convertProjectJsonToArduinoC(projectJson);
+		smallCache.convertProjectJsonToArduinoC(otherProjectJson);
+		assertNotSame(code, smallCache.convertProjectJsonToArduinoC(projectJson));
+	}
+
+	@Test
+	public void testInvalidJson() {
+		ConversionCache cache = new ConversionCache(16, Duration.ofMinutes(10));
+		assertThrows(ScratchParseException.class, () -> {
+			cache.convertProjectJsonToArduinoC("{\"targets\": [".getBytes("UTF-8"));
+		});
+	}
+}
@@ -0,0 +1,100 @@
+package com.github.intrigus.ftd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.intrigus.ftd.util.JsonUtil;
+
+public class ConversionDaemonTest {
+
+	@TempDir
+	public Path tempDir;
+
+	private static Path getResourcePath(String name) throws Exception {
+		return Paths.get(Thread.currentThread().getContextClassLoader().getResource(name).toURI());
+	}
+
+	private static JsonNode[] serve(String... requests) throws Exception {
+		StringWriter out = new StringWriter();
+		ConversionDaemon.serve(new BufferedReader(new StringReader(String.join("\n", requests))), out);
+		String[] lines = out.toString().split(System.lineSeparator());
+		JsonNode[] responses = new JsonNode[lines.length];
+		for (int i = 0; i < lines.length; i++) {
+			responses[i] = JsonUtil.readerFor(JsonNode.class).readValue(lines[i]);
+		}
+		return responses;
+	}
+
+	@Test
+	public void testRequests() throws Exception {
+		Path sb3File = getResourcePath("biggertest.sb3");
+		String targetJson = Files.readString(getResourcePath("single-target.json"));
+		JsonNode target = JsonUtil.readerFor(JsonNode.class).readValue(targetJson);
+		String pathRequest = "{\"id\": 1, \"path\": " + JsonUtil.writer().writeValueAsString(sb3File.toString()) + "}";
+		String targetRequest = "{\"id\": \"two\", \"target\": " + JsonUtil.writer().writeValueAsString(target) + "}";
+
+		JsonNode[] responses = serve(pathRequest, "", targetRequest);
+
+		assertEquals(2, responses.length);
+		assertEquals(1, responses[0].get("id").asInt());
+		assertEquals(0, responses[0].get("exitCode").asInt());
+		assertEquals(Sb3ToArduinoC.convertSb3FileToArduinoC(sb3File), responses[0].get("code").asText());
+		assertEquals("two", responses[1].get("id").asText());
+		assertEquals(Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(targetJson), responses[1].get("code").asText());
+	}
+
+	@Test
+	public void testOutputRequest() throws Exception {
+		Path sb3File = getResourcePath("motor_stop_test.sb3");
+		Path output = tempDir.resolve("motor_stop_test.ino");
+		String request = "{\"path\": " + JsonUtil.writer().writeValueAsString(sb3File.toString()) + ", \"output\": "
+				+ JsonUtil.writer().writeValueAsString(output.toString()) + "}";
+
+		JsonNode[] responses = serve(request);
+
+		assertEquals(0, responses[0].get("exitCode").asInt());
+		assertFalse(responses[0].has("code"));
+		assertEquals(Sb3ToArduinoC.convertSb3FileToArduinoC(sb3File) + System.lineSeparator(),
+				Files.readString(output));
+	}
+
+	@Test
+	public void testFailedRequests() throws Exception {
+		String unsupportedRequest = "{\"id\": 3, \"path\": "
+				+ JsonUtil.writer().writeValueAsString(getResourcePath("Einparker_V1_0.sb3").toString()) + "}";
+
+		JsonNode[] responses = serve("{\"id\": 1", "{\"id\": 2}", unsupportedRequest);
+
+		assertEquals(ExitCode.PARSING_FAILED.getCode(), responses[0].get("exitCode").asInt());
+		assertEquals(ExitCode.PARSING_FAILED.getCode(), responses[1].get("exitCode").asInt());
+		assertEquals(2, responses[1].get("id").asInt());
+		assertEquals(ExitCode.UNIMPLEMENTED.getCode(), responses[2].get("exitCode").asInt());
+		assertEquals(ExitCode.UNIMPLEMENTED.getDescription(), responses[2].get("error").asText());
+	}
+
+	@Test
+	public void testStackOverflowOnlyFailsItsRequest() throws Exception {
+		String deepRequest = "{\"id\": 1, \"target\": " + BatchConverterTest.deeplyNestedTarget(100_000) + "}";
+		String nextRequest = "{\"id\": 2, \"target\": "
+				+ Files.readString(getResourcePath("single-target.json")).replaceAll("\\s+", " ") + "}";
+
+		JsonNode[] responses = serve(deepRequest, nextRequest);
+
+		assertEquals(2, responses.length);
+		assertEquals(ExitCode.UNKNOWN_ERROR.getCode(), responses[0].get("exitCode").asInt());
+		assertEquals("java.lang.StackOverflowError", responses[0].get("errorMessage").asText());
+		assertEquals(2, responses[1].get("id").asInt());
+		assertEquals(ExitCode.SUCCESS.getCode(), responses[1].get("exitCode").asInt());
+	}
+}
@@ -3,22 +3,58 @@
  */
 package com.github.intrigus.ftd;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.stream.Stream;
 
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.intrigus.ftd.exception.CompilationFailedException;
 import com.github.intrigus.ftd.exception.ScratchParseException;
+import com.github.intrigus.ftd.exception.ScratchUnimplementedException;
+import com.github.intrigus.ftd.util.JsonUtil;
 
 public class ConversionTest {
 
+	@TempDir
+	public static Path compileCacheDir;
+
+	/**
+	 * Makes sure that the programs are really compiled and not taken from the
+	 * cache of a previous run.
+	 */
+	@BeforeAll
+	public static void useEmptyCompileCache() {
+		System.setProperty("ftd.compile.cache.dir", compileCacheDir.toString());
+	}
+
+	@AfterAll
+	public static void resetCompileCache() {
+		System.clearProperty("ftd.compile.cache.dir");
+	}
+
 	@Test
 	public void testNullConversion() {
 		assertThrows(NullPointerException.class, () -> {
@@ -41,6 +77,24 @@ public class ConversionTest {
 		Sb3ToArduinoC.convertToArduinoC(testFile);
 	}
 
+	@ParameterizedTest(name = "{index} {0}")
+	@MethodSource("provideScratchTestFiles")
+	public void testStreamingConversion(String testName, InputStream testFile)
+			throws ScratchParseException, IOException {
+		byte[] sb3 = testFile.readAllBytes();
+		StringWriter streamedCode = new StringWriter();
+		Sb3ToArduinoC.convertToArduinoC(new ByteArrayInputStream(sb3), streamedCode);
+		assertEquals(Sb3ToArduinoC.convertToArduinoC(new ByteArrayInputStream(sb3)), streamedCode.toString());
+	}
+
+	@ParameterizedTest(name = "{index} {0}")
+	@MethodSource("provideScratchTestFiles")
+	public void testPathConversion(String testName, InputStream testFile)
+			throws ScratchParseException, IOException, URISyntaxException {
+		Path path = Paths.get(Thread.currentThread().getContextClassLoader().getResource(testName).toURI());
+		assertEquals(Sb3ToArduinoC.convertToArduinoC(testFile), Sb3ToArduinoC.convertSb3FileToArduinoC(path));
+	}
+
 	@ParameterizedTest(name = "{index} {0}")
 	@MethodSource("provideScratchTestFiles")
 	public void testCompilation(String testName, InputStream testFile)
@@ -48,6 +102,318 @@ public class ConversionTest {
 		ArduinoCLI.compileArduinoC(Sb3ToArduinoC.convertToArduinoC(testFile));
 	}
 
+	@Test
+	public void testLongScriptConversion() throws ScratchParseException, IOException {
+		int blockCount = 100_000;
+		StringBuilder blocks = new StringBuilder();
+		blocks.append("\"hat\": {\"opcode\": \"event_whenflagclicked\", \"next\": \"led0\", \"parent\": null, "
+				+ "\"inputs\": {}, \"fields\": {}, \"shadow\": false, \"topLevel\": true, \"x\": 0, \"y\": 0}");
+		for (int i = 0; i < blockCount; i++) {
+			String next = i + 1 < blockCount ? "\"led" + (i + 1) + "\"" : "null";
+			String parent = i > 0 ? "\"led" + (i - 1) + "\"" : "\"hat\"";
+			blocks.append(", \"led" + i + "\": {\"opcode\": \"ftduino_led\", \"next\": " + next + ", \"parent\": "
+					+ parent + ", \"inputs\": {}, \"fields\": {\"VALUE\": [\"" + (i % 2) + "\", null]}, "
+					+ "\"shadow\": false, \"topLevel\": false}");
+		}
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC("{\"blocks\": {" + blocks + "}}");
+		assertEquals(blockCount, code.split("digitalWrite\\(LED_BUILTIN").length - 1);
+	}
+
+	@Test
+	public void testBlocksAfterRepeatAreNotRepeated() throws ScratchParseException, IOException {
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC("{\"blocks\": {"
+				+ "\"hat\": {\"opcode\": \"event_whenflagclicked\", \"next\": \"repeat\", \"parent\": null, "
+				+ "\"inputs\": {}, \"fields\": {}, \"shadow\": false, \"topLevel\": true, \"x\": 0, \"y\": 0}, "
+				+ "\"repeat\": {\"opcode\": \"control_repeat\", \"next\": \"after\", \"parent\": \"hat\", "
+				+ "\"inputs\": {\"TIMES\": [1, [6, \"10\"]], \"SUBSTACK\": [2, \"inside\"]}, \"fields\": {}, "
+				+ "\"shadow\": false, \"topLevel\": false}, "
+				+ "\"inside\": {\"opcode\": \"ftduino_led\", \"next\": null, \"parent\": \"repeat\", "
+				+ "\"inputs\": {}, \"fields\": {\"VALUE\": [\"1\", null]}, \"shadow\": false, \"topLevel\": false}, "
+				+ "\"after\": {\"opcode\": \"ftduino_led\", \"next\": null, \"parent\": \"repeat\", "
+				+ "\"inputs\": {}, \"fields\": {\"VALUE\": [\"0\", null]}, \"shadow\": false, \"topLevel\": false}}}");
+		int loopEnd = code.indexOf("}", code.indexOf("for("));
+		int insideLed = code.indexOf("digitalWrite(LED_BUILTIN");
+		int afterLed = code.indexOf("digitalWrite(LED_BUILTIN", insideLed + 1);
+		assertTrue(insideLed < loopEnd);
+		assertTrue(afterLed > loopEnd);
+	}
+
+	@Test
+	public void testNestedRepeatsCountTheirOwnTimes() throws ScratchParseException, IOException {
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC("{\"blocks\": {"
+				+ "\"hat\": {\"opcode\": \"event_whenflagclicked\", \"next\": \"outer\", \"parent\": null, "
+				+ "\"inputs\": {}, \"fields\": {}, \"shadow\": false, \"topLevel\": true, \"x\": 0, \"y\": 0}, "
+				+ "\"outer\": {\"opcode\": \"control_repeat\", \"next\": null, \"parent\": \"hat\", "
+				+ "\"inputs\": {\"TIMES\": [1, [4, \"2.5\"]], \"SUBSTACK\": [2, \"inner\"]}, \"fields\": {}, "
+				+ "\"shadow\": false, \"topLevel\": false}, "
+				+ "\"inner\": {\"opcode\": \"control_repeat\", \"next\": null, \"parent\": \"outer\", "
+				+ "\"inputs\": {\"TIMES\": [3, \"counter\", [6, \"10\"]]}, \"fields\": {}, "
+				+ "\"shadow\": false, \"topLevel\": false}, "
+				+ "\"counter\": {\"opcode\": \"ftduino_input_counter\", \"next\": null, \"parent\": \"inner\", "
+				+ "\"inputs\": {}, \"fields\": {\"INPUT\": [\"C1\", null]}, \"shadow\": false, "
+				+ "\"topLevel\": false}}}");
+		assertTrue(code.contains("for(uint32_t repeat1 = toRepeatCount(2.5f); repeat1 > 0; repeat1--) {"));
+		assertTrue(code.contains("for(int32_t repeat2 = ((int32_t) scratch_ftduino_input_counter_value("
+				+ "CounterSpecifier::C1)); repeat2 > 0; repeat2--) {"));
+	}
+
+	@Test
+	public void testConstantFieldsAreGeneratedAsEnumerators() throws ScratchParseException, IOException {
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC("{\"blocks\": {"
+				+ "\"hat\": {\"opcode\": \"event_whenflagclicked\", \"next\": \"stop\", \"parent\": null, "
+				+ "\"inputs\": {}, \"fields\": {}, \"shadow\": false, \"topLevel\": true, \"x\": 0, \"y\": 0}, "
+				+ "\"stop\": {\"opcode\": \"ftduino_motor_stop\", \"next\": \"output\", \"parent\": \"hat\", "
+				+ "\"inputs\": {}, \"fields\": {\"MOTOR\": [\"m2\", null], \"STOPMODE\": [\"brake\", null]}, "
+				+ "\"shadow\": false, \"topLevel\": false}, "
+				+ "\"output\": {\"opcode\": \"ftduino_output\", \"next\": null, \"parent\": \"stop\", "
+				+ "\"inputs\": {}, \"fields\": {\"OUTPUT\": [\"O3\", null], \"VALUE\": [\"1\", null]}, "
+				+ "\"shadow\": false, \"topLevel\": false}}}");
+		assertTrue(code.contains("scratch_ftduino_motor_stop(MotorSpecifier::M2, MotorStopMode::BRAKE);"));
+		assertTrue(code.contains("scratch_ftduino_output(OutputSpecifier::O3, true);"));
+	}
+
+	@Test
+	public void testUnsupportedOpcode() {
+		ScratchUnimplementedException e = assertThrows(ScratchUnimplementedException.class, () -> {
+			Sb3ToArduinoC.convertSingleTargetJsonToArduinoC("{\"blocks\": {"
+					+ "\"hat\": {\"opcode\": \"event_whenflagclicked\", \"next\": \"say\", \"parent\": null, "
+					+ "\"inputs\": {}, \"fields\": {}, \"shadow\": false, \"topLevel\": true, \"x\": 0, \"y\": 0}, "
+					+ "\"say\": {\"opcode\": \"looks_say\", \"next\": null, \"parent\": \"hat\", "
+					+ "\"inputs\": {}, \"fields\": {}, \"shadow\": false, \"topLevel\": false}}}");
+		});
+		assertTrue(e.getMessage().contains("looks_say"));
+	}
+
+	@Test
+	public void testProjectWithoutSprite() {
+		assertThrows(ScratchParseException.class, () -> {
+			Sb3ToArduinoC.convertProjectJsonToArduinoC("{\"targets\": [{\"isStage\": true, \"blocks\": {}}], "
+					+ "\"monitors\": [], \"meta\": {\"semver\": \"3.0.0\"}}");
+		});
+	}
+
+	@Test
+	public void testLoopOfNextBlocks() {
+		String wait = "{\"opcode\": \"control_wait\", \"next\": \"%s\", \"parent\": \"%s\", "
+				+ "\"inputs\": {\"DURATION\": [1, [5, \"1\"]]}, \"fields\": {}, \"shadow\": false, "
+				+ "\"topLevel\": false}";
+		String json = "{\"blocks\": {" + HAT_BLOCK.replace("hat-call0", "a") + ", \"a\": "
+				+ String.format(wait, "b", "hat") + ", \"b\": " + String.format(wait, "a", "a") + "}}";
+		ScratchParseException e = assertThrows(ScratchParseException.class, () -> {
+			Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(json);
+		});
+		assertEquals("The blocks following the block \"control_wait\" form a loop.", e.getMessage());
+	}
+
+	/**
+	 * Serializes the project again with different ids, in reverse block order and
+	 * with moved blocks, just like a semantically identical project that has been
+	 * saved by another Scratch editor.
+	 */
+	private static String reserialize(byte[] projectJson) throws IOException {
+		JsonNode project = JsonUtil.readerFor(JsonNode.class).readValue(projectJson);
+		ObjectNode blocks = (ObjectNode) project.get("targets").get(1).get("blocks");
+		List<String> ids = new ArrayList<>();
+		blocks.fieldNames().forEachRemaining(ids::add);
+		String json = JsonUtil.writer().writeValueAsString(blocks);
+		for (int i = 0; i < ids.size(); i++) {
+			String id = JsonUtil.writer().writeValueAsString(ids.get(i));
+			json = json.replace(id, "\"renamed-" + (ids.size() - i) + "\"");
+		}
+		ObjectNode renamedBlocks = JsonUtil.readerFor(ObjectNode.class).readValue(json);
+		List<String> renamedIds = new ArrayList<>();
+		renamedBlocks.fieldNames().forEachRemaining(renamedIds::add);
+		Collections.reverse(renamedIds);
+		blocks.removeAll();
+		for (String id : renamedIds) {
+			JsonNode block = renamedBlocks.get(id);
+			if (block.has("x")) {
+				((ObjectNode) block).put("x", block.get("x").asInt() + 10);
+			}
+			blocks.set(id, block);
+		}
+		return JsonUtil.writer().writeValueAsString(project);
+	}
+
+	@ParameterizedTest(name = "{index} {0}")
+	@MethodSource("provideScratchTestFiles")
+	public void testDeterministicOutput(String testName, InputStream testFile)
+			throws ScratchParseException, IOException {
+		byte[] projectJson = ConversionCacheTest.readProjectJson(testName);
+		String code = Sb3ToArduinoC.convertProjectJsonToArduinoC(new String(projectJson, StandardCharsets.UTF_8));
+		assertEquals(code, Sb3ToArduinoC.convertProjectJsonToArduinoC(reserialize(projectJson)));
+	}
+
+	private static final String HAT_BLOCK = "\"hat\": {\"opcode\": \"event_whenflagclicked\", "
+			+ "\"next\": \"hat-call0\", \"parent\": null, \"inputs\": {}, \"fields\": {}, \"shadow\": false, "
+			+ "\"topLevel\": true, \"x\": 0, \"y\": 0}";
+
+	/**
+	 * Returns the blocks of a definition of a custom block with the given
+	 * proccode that calls the given custom blocks.
+	 */
+	private static String procedureBlocks(String id, String proccode, String... calledProccodes) {
+		String next = calledProccodes.length > 0 ? "\"" + id + "-call0\"" : "null";
+		return ", \"" + id + "\": {\"opcode\": \"procedures_definition\", \"next\": " + next
+				+ ", \"parent\": null, \"inputs\": {\"custom_block\": [1, \"" + id + "-prototype\"]}, "
+				+ "\"fields\": {}, \"shadow\": false, \"topLevel\": true, \"x\": 0, \"y\": 0}"
+				+ ", \"" + id + "-prototype\": {\"opcode\": \"procedures_prototype\", \"next\": null, "
+				+ "\"parent\": \"" + id + "\", \"inputs\": {}, \"fields\": {}, \"shadow\": true, "
+				+ "\"topLevel\": false, \"mutation\": {\"proccode\": \"" + proccode + "\", "
+				+ "\"argumentids\": \"[]\", \"argumentnames\": \"[]\", \"argumentdefaults\": \"[]\"}}"
+				+ callBlocks(id, calledProccodes);
+	}
+
+	/**
+	 * Returns the blocks that call the given custom blocks one after another below
+	 * the block with the given id.
+	 */
+	private static String callBlocks(String parentId, String... calledProccodes) {
+		StringBuilder blocks = new StringBuilder();
+		for (int i = 0; i < calledProccodes.length; i++) {
+			String next = i + 1 < calledProccodes.length ? "\"" + parentId + "-call" + (i + 1) + "\"" : "null";
+			String parent = i > 0 ? parentId + "-call" + (i - 1) : parentId;
+			blocks.append(", \"" + parentId + "-call" + i + "\": {\"opcode\": \"procedures_call\", \"next\": "
+					+ next + ", \"parent\": \"" + parent + "\", \"inputs\": {}, \"fields\": {}, "
+					+ "\"shadow\": false, \"topLevel\": false, \"mutation\": {\"proccode\": \""
+					+ calledProccodes[i] + "\", \"argumentids\": \"[]\"}}");
+		}
+		return blocks.toString();
+	}
+
+	@Test
+	public void testProceduresAreOrderedByCalls() throws ScratchParseException, IOException {
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC("{\"blocks\": {" + HAT_BLOCK
+				+ callBlocks("hat", "a", "b") + procedureBlocks("z", "a", "c") + procedureBlocks("y", "b")
+				+ procedureBlocks("x", "c", "d", "c") + procedureBlocks("w", "d", "e") + procedureBlocks("v", "e", "d")
+				+ "}}");
+		int a = code.indexOf("void fd_a");
+		int b = code.indexOf("void fd_b");
+		int c = code.indexOf("void fd_c");
+		int d = code.indexOf("void fd_d");
+		int e = code.indexOf("void fd_e");
+		int loop = code.indexOf("void loop");
+		// b does not call anything, d and e call each other, c calls d and a calls c
+		assertTrue(b < d);
+		assertTrue(d < e);
+		assertTrue(e < c);
+		assertTrue(c < a);
+		assertTrue(a < loop);
+	}
+
+	@Test
+	public void testUnusedScriptsAreLeftOut() throws ScratchParseException, IOException {
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC("{\"blocks\": {" + HAT_BLOCK
+				+ callBlocks("hat", "used") + procedureBlocks("z", "used") + procedureBlocks("y", "unused", "used")
+				+ ", \"loose\": {\"opcode\": \"ftduino_led\", \"next\": null, \"parent\": null, "
+				+ "\"inputs\": {}, \"fields\": {\"VALUE\": [\"1\", null]}, \"shadow\": false, "
+				+ "\"topLevel\": true, \"x\": 0, \"y\": 0}}}");
+		assertTrue(code.contains("void fd_used"));
+		assertFalse(code.contains("void fd_unused"));
+		assertFalse(code.contains("digitalWrite(LED_BUILTIN"));
+		assertTrue(code.contains("// Warning: The custom block \"unused\" is never used"));
+		assertTrue(code.contains("// Warning: A script starting with the block \"ftduino_led\" is not below"));
+	}
+
+	@Test
+	public void testArgumentOutsideOfDefinitionIsZero() throws ScratchParseException, IOException {
+		String hatBlock = HAT_BLOCK.replace("hat-call0", "wait");
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC("{\"blocks\": {" + hatBlock
+				+ ", \"wait\": {\"opcode\": \"control_wait\", \"next\": null, \"parent\": \"hat\", "
+				+ "\"inputs\": {\"DURATION\": [3, \"argument\", [5, \"1\"]]}, \"fields\": {}, \"shadow\": false, "
+				+ "\"topLevel\": false}, \"argument\": {\"opcode\": \"argument_reporter_string_number\", "
+				+ "\"next\": null, \"parent\": \"wait\", \"inputs\": {}, \"fields\": {\"VALUE\": [\"x\", null]}, "
+				+ "\"shadow\": false, \"topLevel\": false}}}");
+		assertTrue(code.contains("delay(1000 * toNumber(scratchNumber(0)));"));
+	}
+
+	/**
+	 * Returns a script that waits for the duration computed by the given reporter
+	 * block with the id "reporter".
+	 */
+	private static String waitForReporter(String reporterBlocks) {
+		return "{\"blocks\": {" + HAT_BLOCK.replace("hat-call0", "wait")
+				+ ", \"wait\": {\"opcode\": \"control_wait\", \"next\": null, \"parent\": \"hat\", "
+				+ "\"inputs\": {\"DURATION\": [3, \"reporter\", [5, \"1\"]]}, \"fields\": {}, "
+				+ "\"shadow\": false, \"topLevel\": false}, " + reporterBlocks + "}}";
+	}
+
+	@Test
+	public void testOperatorsWithKnownInputsAreFolded() throws ScratchParseException, IOException {
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(waitForReporter("\"reporter\": {"
+				+ "\"opcode\": \"operator_add\", \"next\": null, \"parent\": \"wait\", "
+				+ "\"inputs\": {\"NUM1\": [1, [4, \"2\"]], \"NUM2\": [3, \"product\", [4, \"1\"]]}, "
+				+ "\"fields\": {}, \"shadow\": false, \"topLevel\": false}, \"product\": {"
+				+ "\"opcode\": \"operator_multiply\", \"next\": null, \"parent\": \"reporter\", "
+				+ "\"inputs\": {\"NUM1\": [1, [4, \"0.5\"]], \"NUM2\": [1, [4, \"3\"]]}, "
+				+ "\"fields\": {}, \"shadow\": false, \"topLevel\": false}"));
+		assertTrue(code.contains("delay(1000 * 3.5f);"));
+	}
+
+	@Test
+	public void testNonFiniteResultsAreNotFolded() throws ScratchParseException, IOException {
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(waitForReporter("\"reporter\": {"
+				+ "\"opcode\": \"operator_divide\", \"next\": null, \"parent\": \"wait\", "
+				+ "\"inputs\": {\"NUM1\": [1, [4, \"2\"]], \"NUM2\": [1, [4, \"0\"]]}, "
+				+ "\"fields\": {}, \"shadow\": false, \"topLevel\": false}"));
+		assertTrue(code.contains("delay(1000 * toNumber((2.0f / 0.0f)));"));
+	}
+
+	@Test
+	public void testOperatorsWithUnknownInputsAreNotFolded() throws ScratchParseException, IOException {
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(waitForReporter("\"reporter\": {"
+				+ "\"opcode\": \"operator_divide\", \"next\": null, \"parent\": \"wait\", "
+				+ "\"inputs\": {\"NUM1\": [3, \"analog\", [4, \"1\"]], \"NUM2\": [1, [4, \"2\"]]}, "
+				+ "\"fields\": {}, \"shadow\": false, \"topLevel\": false}, \"analog\": {"
+				+ "\"opcode\": \"ftduino_input_analog\", \"next\": null, \"parent\": \"reporter\", "
+				+ "\"inputs\": {}, \"fields\": {\"INPUT\": [\"I1\", null], \"MODE\": [\"VOLTAGE\", null]}, "
+				+ "\"shadow\": false, \"topLevel\": false}"));
+		assertTrue(code.contains("delay(1000 * toNumber((((float) scratch_ftduino_input_analog_value("
+				+ "AnalogInputSpecifier::I1, InputMode::VOLTAGE)) / 2.0f)));"));
+	}
+
+	@Test
+	public void testNumbersAreGeneratedWithoutScratchValue() throws ScratchParseException, IOException {
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(waitForReporter("\"reporter\": {"
+				+ "\"opcode\": \"operator_subtract\", \"next\": null, \"parent\": \"wait\", "
+				+ "\"inputs\": {\"NUM1\": [3, \"analog\", [4, \"1\"]], \"NUM2\": [1, [10, \"2.5\"]]}, "
+				+ "\"fields\": {}, \"shadow\": false, \"topLevel\": false}, \"analog\": {"
+				+ "\"opcode\": \"ftduino_input_analog\", \"next\": null, \"parent\": \"reporter\", "
+				+ "\"inputs\": {}, \"fields\": {\"INPUT\": [\"I1\", null], \"MODE\": [\"VOLTAGE\", null]}, "
+				+ "\"shadow\": false, \"topLevel\": false}"));
+		assertTrue(code.contains("delay(1000 * toNumber((((float) scratch_ftduino_input_analog_value("
+				+ "AnalogInputSpecifier::I1, InputMode::VOLTAGE)) - 2.5f)));"));
+	}
+
+	@Test
+	public void testIntegersAreGeneratedAsIntegers() throws ScratchParseException, IOException {
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(waitForReporter("\"reporter\": {"
+				+ "\"opcode\": \"operator_add\", \"next\": null, \"parent\": \"wait\", "
+				+ "\"inputs\": {\"NUM1\": [3, \"product\", [4, \"1\"]], \"NUM2\": [1, [4, \"1\"]]}, "
+				+ "\"fields\": {}, \"shadow\": false, \"topLevel\": false}, \"product\": {"
+				+ "\"opcode\": \"operator_multiply\", \"next\": null, \"parent\": \"reporter\", "
+				+ "\"inputs\": {\"NUM1\": [3, \"counter\", [4, \"1\"]], \"NUM2\": [1, [4, \"3\"]]}, "
+				+ "\"fields\": {}, \"shadow\": false, \"topLevel\": false}, \"counter\": {"
+				+ "\"opcode\": \"ftduino_input_counter\", \"next\": null, \"parent\": \"product\", "
+				+ "\"inputs\": {}, \"fields\": {\"INPUT\": [\"C1\", null]}, "
+				+ "\"shadow\": false, \"topLevel\": false}"));
+		assertTrue(code.contains("delay(1000 * ((float) ((((int32_t) scratch_ftduino_input_counter_value("
+				+ "CounterSpecifier::C1)) * 3) + 1)));"));
+	}
+
+	@Test
+	public void testIntegersThatCanBeNegativeZeroAreGeneratedAsFloats() throws ScratchParseException, IOException {
+		String code = Sb3ToArduinoC.convertSingleTargetJsonToArduinoC(waitForReporter("\"reporter\": {"
+				+ "\"opcode\": \"operator_multiply\", \"next\": null, \"parent\": \"wait\", "
+				+ "\"inputs\": {\"NUM1\": [1, [4, \"-3\"]], \"NUM2\": [3, \"counter\", [4, \"1\"]]}, "
+				+ "\"fields\": {}, \"shadow\": false, \"topLevel\": false}, \"counter\": {"
+				+ "\"opcode\": \"ftduino_input_counter\", \"next\": null, \"parent\": \"reporter\", "
+				+ "\"inputs\": {}, \"fields\": {\"INPUT\": [\"C1\", null]}, "
+				+ "\"shadow\": false, \"topLevel\": false}"));
+		assertTrue(code.contains("delay(1000 * toNumber((-3.0f * ((float) scratch_ftduino_input_counter_value("
+				+ "CounterSpecifier::C1)))));"));
+	}
+
 	private static Stream<Arguments> provideScratchSingleTargetTestFiles() {
 		return Stream.of("single-target.json").map(
 				(name) -> Arguments.of(name, Thread.currentThread().getContextClassLoader().getResourceAsStream(name)));
@@ -0,0 +1,62 @@
+package com.github.intrigus.ftd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.intrigus.ftd.util.JsonUtil;
+
+public class ScriptCodeCacheTest {
+
+	/**
+	 * Converts the project without the {@link ScriptCodeCache}, the blocks bound
+	 * by Jackson have no hashes.
+	 */
+	private static String convertUncached(JsonNode project) throws Exception {
+		ScratchTarget target = JsonUtil.readerFor(ScratchTarget.class).readValue(project.get("targets").get(1));
+		target.getBlocks().init();
+		return target.getBlocks().generateCCode();
+	}
+
+	private static Stream<String> provideScratchTestFiles() {
+		return Stream.of("biggertest.sb3", "all_milestone_1_blocks_modified.sb3", "motor_stop_test.sb3",
+				"when_input_test.sb3", "all_milestone_1_blocks.sb3", "self_defined_func_with_args.sb3",
+				"self_defined_func_without_args.sb3", "self_defined_func_with_lots_of_args.sb3");
+	}
+
+	@ParameterizedTest(name = "{index} {0}")
+	@MethodSource("provideScratchTestFiles")
+	public void testCachedScriptsGenerateTheSameCode(String testName) throws Exception {
+		byte[] projectJson = ConversionCacheTest.readProjectJson(testName);
+		String expectedCode = convertUncached(JsonUtil.readerFor(JsonNode.class).readValue(projectJson));
+
+		String code = Sb3ToArduinoC.convertProjectJsonToArduinoC(new String(projectJson, "UTF-8"));
+		String cachedCode = Sb3ToArduinoC.convertProjectJsonToArduinoC(new String(projectJson, "UTF-8"));
+
+		assertEquals(expectedCode, code);
+		assertEquals(expectedCode, cachedCode);
+	}
+
+	@Test
+	public void testChangedProcedureIsGeneratedAgain() throws Exception {
+		byte[] projectJson = ConversionCacheTest.readProjectJson("self_defined_func_with_args.sb3");
+		JsonNode project = JsonUtil.readerFor(JsonNode.class).readValue(projectJson);
+		String code = Sb3ToArduinoC.convertProjectJsonToArduinoC(new String(projectJson, "UTF-8"));
+		ObjectNode ledBlock = ConversionCacheTest.getBlock(project, "ftduino_led");
+		JsonNode off = JsonUtil.readerFor(JsonNode.class).readValue("\"Off\"");
+		((ArrayNode) ledBlock.get("fields").get("VALUE")).set(0, off);
+
+		String changedCode = Sb3ToArduinoC.convertProjectJsonToArduinoC(JsonUtil.writer().writeValueAsString(project));
+
+		assertNotEquals(code, changedCode);
+		assertEquals(convertUncached(project), changedCode);
+	}
+}
@@ -0,0 +1,31 @@
+package com.github.intrigus.ftd.block;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class CodeEmitterTest {
+
+	@Test
+	public void testIndentation() {
+		StringBuilder code = new StringBuilder();
+		CodeEmitter out = new CodeEmitter(code);
+		out.append("void loop() ").beginBlock();
+		out.append("while(1) ").beginBlock().append("a();\nb(").append("c());\n").endBlock();
+		out.endBlock();
+		assertEquals("void loop() {\n  while(1) {\n    a();\n    b(c());\n  }\n}\n", code.toString());
+	}
+
+	@Test
+	public void testEmptyLinesAreNotIndented() {
+		StringBuilder code = new StringBuilder();
+		new CodeEmitter(code).beginBlock().append("\n\n").endBlock();
+		assertEquals("{\n\n\n}\n", code.toString());
+	}
+
+	@Test
+	public void testUnbalancedEndBlock() {
+		assertThrows(IllegalStateException.class, () -> new CodeEmitter(new StringBuilder()).endBlock());
+	}
+}
@@ -0,0 +1,46 @@
+package com.github.intrigus.ftd.block;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+public class IntegerRangeTest {
+
+	@Test
+	public void testNumbers() {
+		assertEquals("IntegerRange [5, 5]", IntegerRange.of(5f).toString());
+		assertEquals("IntegerRange [0, 0]", IntegerRange.of(0f).toString());
+		assertEquals("IntegerRange [-16777216, -16777216]", IntegerRange.of(-16777216f).toString());
+		assertNull(IntegerRange.of(0.5f));
+		assertNull(IntegerRange.of(-0f));
+		assertNull(IntegerRange.of(16777218f));
+		assertNull(IntegerRange.of(Float.NaN));
+		assertNull(IntegerRange.of(Float.POSITIVE_INFINITY));
+	}
+
+	@Test
+	public void testArithmetic() {
+		IntegerRange counter = IntegerRange.of(0, 65535);
+		assertEquals("IntegerRange [1, 65536]", counter.add(IntegerRange.of(1f)).toString());
+		assertEquals("IntegerRange [-65535, 65535]", counter.subtract(counter).toString());
+		assertEquals("IntegerRange [0, 196605]", counter.multiply(IntegerRange.of(3f)).toString());
+		assertEquals("IntegerRange [-20, 15]", IntegerRange.of(-4, 3).multiply(IntegerRange.of(1, 5)).toString());
+		assertNull(counter.multiply(counter));
+		assertNull(IntegerRange.of(16777216f).add(IntegerRange.of(1f)));
+	}
+
+	@Test
+	public void testNegativeZeroProductsAreNotIntegers() {
+		assertNull(IntegerRange.of(0, 65535).multiply(IntegerRange.of(-3f)));
+		assertNull(IntegerRange.of(-3f).multiply(IntegerRange.of(0f)));
+		assertEquals("IntegerRange [0, 0]", IntegerRange.of(0f).multiply(IntegerRange.of(0, 3)).toString());
+	}
+
+	@Test
+	public void testCTypes() {
+		assertEquals("int16_t", IntegerRange.of(-32768, 32767).getCType());
+		assertEquals("int32_t", IntegerRange.of(-32769, 0).getCType());
+		assertEquals("int32_t", IntegerRange.of(0, 32768).getCType());
+	}
+}
@@ -0,0 +1,36 @@
+package com.github.intrigus.ftd.block;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ProcedureScopeTest {
+
+	@Test
+	public void testArguments() {
+		ProcedureScope scope = new ProcedureScope(List.of("speed", "motor 1"));
+		assertEquals("fd_speed", scope.resolve("speed"));
+		assertEquals("fd_motor321", scope.resolve("motor 1"));
+		assertNull(scope.resolve("not defined"));
+		assertEquals("ScratchValue fd_speed, ScratchValue fd_motor321", scope.getCParameters());
+	}
+
+	@Test
+	public void testDuplicateArgumentsAreUnnamed() {
+		ProcedureScope scope = new ProcedureScope(List.of("b", "b", "c", "b"));
+		assertEquals("fd_b", scope.resolve("b"));
+		assertEquals("ScratchValue fd_b, ScratchValue , ScratchValue fd_c, ScratchValue ", scope.getCParameters());
+	}
+
+	@Test
+	public void testCollidingIdentifiersAreRenamed() {
+		ProcedureScope scope = new ProcedureScope(List.of("a%", "a37", "a37_2", ""));
+		assertEquals("fd_a37", scope.resolve("a%"));
+		assertEquals("fd_a37_2", scope.resolve("a37"));
+		assertEquals("fd_a37_2_2", scope.resolve("a37_2"));
+		assertEquals("fd_", scope.resolve(""));
+	}
+}